@@ -0,0 +1,72 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of an attachment download. Attachments that were written or that
+ * were already present with the same content are reported as succeeded.
+ *
+ * @author Pieter van der Merwe
+ *
+ */
+public class AttachmentDownloadResult extends BatchResult {
+
+    private final List<IdSet> skippedPages = new ArrayList<>();
+    private int skippedCount;
+    private long downloadedBytes;
+
+    synchronized void recordSkipped(final IdSet ids) {
+        skippedPages.add(ids);
+        skippedCount += ids.size();
+        recordSuccess(ids);
+    }
+
+    synchronized void recordDownloaded(final IdSet ids, final long bytes) {
+        downloadedBytes += bytes;
+        recordSuccess(ids);
+    }
+
+    /**
+     * Returns the attachments that were not downloaded because the file was
+     * already present with the same content
+     *
+     * @return
+     */
+    public synchronized IdSet getSkipped() {
+        return IdSet.of(skippedPages.stream().flatMapToInt(IdSet::stream).toArray());
+    }
+
+    /**
+     * Returns the number of bytes written to files
+     *
+     * @return
+     */
+    public synchronized long getDownloadedBytes() {
+        return downloadedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AttachmentDownloadResult(succeeded=" + getSucceeded().size() + ", skipped=" + skippedCount
+                + ", failed=" + getErrors().size() + ", downloadedBytes=" + downloadedBytes + ")";
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+import org.apache.xmlrpc.XmlRpcException;
+
+/**
+ * Downloads the content of ir.attachment records to files. The metadata of the
+ * matching attachments is read in pages and the content is fetched one
+ * attachment at a time, with a limited number of attachments in flight, so
+ * memory use doesn't depend on the number of attachments.
+ *
+ * The base64 content is decoded while it is written to the file. Files that
+ * are already present are skipped when their SHA-1 matches the checksum the
+ * server keeps for the attachment, or their size when the server doesn't keep
+ * checksums.
+ *
+ * @author Pieter van der Merwe
+ *
+ */
+public class AttachmentDownloader {
+
+    private static final String MODEL = "ir.attachment";
+
+    private final OdooCommand command;
+    private final ObjectAdapter adapter;
+    private final String[] metadataFields;
+    private final boolean hasChecksum;
+    private final boolean hasFileSize;
+
+    private int pageSize = 500;
+    private int parallelism = 4;
+    private Function<Map<String, Object>, String> fileNamer = AttachmentDownloader::defaultFileName;
+
+    /**
+     * @param session Session used for the downloads
+     * @throws OdooApiException If ir.attachment could not be found
+     */
+    public AttachmentDownloader(final Session session) throws OdooApiException {
+        this.command = new OdooCommand(session);
+        this.adapter = new ObjectAdapter(command, MODEL, session.getServerVersion());
+        final List<String> available = Arrays.asList(adapter.getFieldNames());
+        this.hasChecksum = available.contains("checksum");
+        this.hasFileSize = available.contains("file_size");
+        final List<String> fields = new ArrayList<>();
+        fields.add("name");
+        if (hasChecksum) fields.add("checksum");
+        if (hasFileSize) fields.add("file_size");
+        this.metadataFields = fields.toArray(new String[fields.size()]);
+    }
+
+    /**
+     * Downloads the content of all attachments that match a filter
+     *
+     * @param filter Filter on ir.attachment, null for all attachments
+     * @param directory Directory to write the files to
+     * @return The attachments that were downloaded, skipped or failed
+     * @throws OdooApiException If the attachments could not be searched. An
+     * attachment that can't be downloaded is reported in the result and
+     * doesn't stop the download.
+     */
+    public AttachmentDownloadResult download(final FilterCollection filter, final Path directory)
+            throws OdooApiException {
+        final Object[] domain = filter == null ? new Object[0] : adapter.validateFilters(filter);
+        final AttachmentDownloadResult result = new AttachmentDownloadResult();
+        try {
+            Files.createDirectories(directory);
+            int lastId = 0;
+            IdSet page;
+            do {
+                // Pages continue after the last ID instead of using an offset,
+                // so later pages don't get slower
+                final Object[] pageDomain = new Object[domain.length + 1];
+                pageDomain[0] = new Object[]{"id", ">", lastId};
+                System.arraycopy(domain, 0, pageDomain, 1, domain.length);
+                page = command.searchObjectIds(MODEL, pageDomain, -1, pageSize, "id");
+                if (!page.isEmpty()) {
+                    downloadPage(page, directory, result);
+                    lastId = page.get(page.size() - 1);
+                }
+            } while (page.size() == pageSize);
+        } catch (XmlRpcException ex) {
+            throw new XmlRpcRuntimeException(ex);
+        } catch (IOException ex) {
+            throw new OdooApiException("Could not create directory " + directory, ex);
+        }
+        return result;
+    }
+
+    private void downloadPage(final IdSet ids, final Path directory, final AttachmentDownloadResult result)
+            throws XmlRpcException, OdooApiException {
+        final List<Callable<Outcome>> tasks = new ArrayList<>(ids.size());
+        for (Object record : command.readObject(MODEL, ids, metadataFields)) {
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> metadata = (Map<String, Object>) record;
+            tasks.add(() -> downloadAttachment(metadata, directory));
+        }
+
+        final List<Integer> downloaded = new ArrayList<>();
+        final List<Integer> skipped = new ArrayList<>();
+        long bytes = 0;
+        for (Outcome outcome : BatchSupport.runAll(tasks, parallelism)) {
+            if (outcome.error != null) {
+                result.recordFailure(IdSet.of(outcome.id), outcome.error);
+            } else if (outcome.bytes < 0) {
+                skipped.add(outcome.id);
+            } else {
+                downloaded.add(outcome.id);
+                bytes += outcome.bytes;
+            }
+        }
+        result.recordSkipped(IdSet.of(skipped.stream().mapToInt(Integer::intValue).toArray()));
+        result.recordDownloaded(IdSet.of(downloaded.stream().mapToInt(Integer::intValue).toArray()), bytes);
+    }
+
+    // Errors are returned instead of thrown, so one attachment doesn't stop
+    // the others
+    private Outcome downloadAttachment(final Map<String, Object> metadata, final Path directory) {
+        final int id = IdSet.toInt(metadata.get("id"));
+        try {
+            final Path file = directory.resolve(fileNamer.apply(metadata));
+            final String checksum = hasChecksum ? stringValue(metadata.get("checksum")) : null;
+            if (Files.exists(file) && isSame(file, checksum, metadata.get("file_size"))) {
+                return new Outcome(id, -1, null);
+            }
+
+            final Object[] records = command.readObject(MODEL, IdSet.of(id), new String[]{"datas"});
+            if (records.length == 0) {
+                return new Outcome(id, 0, "Attachment was deleted during the download");
+            }
+            @SuppressWarnings("unchecked")
+            final String datas = stringValue(((Map<String, Object>) records[0]).get("datas"));
+            if (datas == null) {
+                return new Outcome(id, 0, "Attachment has no content");
+            }
+
+            final Path temp = Files.createTempFile(directory, ".download", ".tmp");
+            try {
+                final MessageDigest digest = sha1();
+                final long size;
+                try (InputStream in = Base64.getMimeDecoder().wrap(new AsciiInputStream(datas));
+                        OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                    size = copy(in, out);
+                }
+                if (checksum != null && !checksum.equalsIgnoreCase(toHex(digest.digest()))) {
+                    return new Outcome(id, 0, "Checksum of the downloaded content doesn't match");
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                return new Outcome(id, size, null);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (XmlRpcException | RuntimeException | IOException ex) {
+            return new Outcome(id, 0, ex.getMessage() == null ? ex.toString() : ex.getMessage());
+        }
+    }
+
+    private boolean isSame(final Path file, final String checksum, final Object fileSize) throws IOException {
+        if (checksum != null) {
+            final MessageDigest digest = sha1();
+            final byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = Files.newInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            return checksum.equalsIgnoreCase(toHex(digest.digest()));
+        }
+        if (hasFileSize && fileSize instanceof Number) {
+            return Files.size(file) == ((Number) fileSize).longValue();
+        }
+        return false;
+    }
+
+    private static long copy(final InputStream in, final OutputStream out) throws IOException {
+        final byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-1 is not available", ex);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final char[] hexDigits = "0123456789abcdef".toCharArray();
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = hexDigits[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = hexDigits[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    // The server returns false for empty values
+    private static String stringValue(final Object value) {
+        return value == null || value instanceof Boolean ? null : value.toString();
+    }
+
+    /**
+     * Default file name: the ID of the attachment followed by its name, with
+     * characters that are not safe in file names replaced
+     */
+    private static String defaultFileName(final Map<String, Object> metadata) {
+        final String name = stringValue(metadata.get("name"));
+        final String safeName = name == null ? "" : "_" + name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return IdSet.toInt(metadata.get("id")) + safeName;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Sets the number of attachments whose metadata is read per call
+     *
+     * @param pageSize Number of attachments, default 500
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be greater than zero");
+        }
+        this.pageSize = pageSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of attachments downloaded at the same time. Every
+     * attachment in flight holds its base64 content in memory while it is
+     * decoded.
+     *
+     * @param parallelism Number of concurrent downloads, default 4
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than zero");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the function that names the file of an attachment. It receives the
+     * id, name and, when the server keeps them, checksum and file_size of the
+     * attachment. Names must be unique per attachment.
+     *
+     * @param fileNamer Function returning a file name relative to the
+     * download directory
+     */
+    public void setFileNamer(Function<Map<String, Object>, String> fileNamer) {
+        this.fileNamer = fileNamer;
+    }
+
+    private static final class Outcome {
+
+        private final int id;
+        // -1 when the file was skipped
+        private final long bytes;
+        private final String error;
+
+        private Outcome(final int id, final long bytes, final String error) {
+            this.id = id;
+            this.bytes = bytes;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Reads the characters of a base64 string as bytes, without copying the
+     * string
+     */
+    private static final class AsciiInputStream extends InputStream {
+
+        private final String chars;
+        private int position;
+
+        private AsciiInputStream(final String chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public int read() {
+            return position < chars.length() ? chars.charAt(position++) & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) {
+            if (length == 0) {
+                return 0;
+            }
+            final int count = Math.min(length, chars.length() - position);
+            if (count <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte) chars.charAt(position++);
+            }
+            return count;
+        }
+    }
+}
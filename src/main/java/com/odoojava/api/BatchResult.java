@@ -0,0 +1,106 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per record outcome of a batch operation that was sent to the server in
+ * chunks. A failing chunk doesn't stop the other chunks, its IDs are reported
+ * as failed with the error of the chunk.
+ *
+ * @author Pieter van der Merwe
+ *
+ */
+public class BatchResult {
+
+    // Chunks are merged when the IDs are asked for, merging on every chunk
+    // would copy the set once per chunk
+    private final List<IdSet> succeededChunks = new ArrayList<>();
+    private final Map<Integer, String> errors = new LinkedHashMap<>();
+
+    synchronized void recordSuccess(final IdSet ids) {
+        succeededChunks.add(ids);
+    }
+
+    synchronized void recordFailure(final IdSet ids, final String error) {
+        ids.forEach(id -> errors.put(id, error));
+    }
+
+    /**
+     * Returns true if the operation succeeded for all IDs
+     *
+     * @return
+     */
+    public synchronized boolean isSuccessful() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * Returns the IDs the operation succeeded for
+     *
+     * @return
+     */
+    public synchronized IdSet getSucceeded() {
+        if (succeededChunks.size() > 1) {
+            final IdSet merged = IdSet.of(succeededChunks.stream().flatMapToInt(IdSet::stream).toArray());
+            succeededChunks.clear();
+            succeededChunks.add(merged);
+        }
+        return succeededChunks.isEmpty() ? IdSet.empty() : succeededChunks.get(0);
+    }
+
+    /**
+     * Returns the IDs the operation failed for. Use it to retry the failed
+     * records.
+     *
+     * @return
+     */
+    public synchronized IdSet getFailed() {
+        return IdSet.of(errors.keySet().stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Returns the error for a failed ID
+     *
+     * @param id Database ID
+     * @return The error message or null if the ID didn't fail
+     */
+    public synchronized String getError(final int id) {
+        return errors.get(id);
+    }
+
+    /**
+     * Returns the error of every failed ID
+     *
+     * @return
+     */
+    public synchronized Map<Integer, String> getErrors() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(errors));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BatchResult(succeeded=" + getSucceeded().size() + ", failed=" + errors.size() + ")";
+    }
+}
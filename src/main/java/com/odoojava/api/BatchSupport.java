@@ -0,0 +1,119 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Helpers for the batch operations of the ObjectAdapter: splitting work in
+ * chunks and running the chunks with limited parallelism.
+ */
+final class BatchSupport {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private BatchSupport() {
+    }
+
+    /**
+     * Splits a number of items in ranges of at most chunkSize items
+     *
+     * @param size Number of items
+     * @param chunkSize Maximum number of items per range
+     * @return Ranges as {from, to} pairs, to being exclusive
+     */
+    static List<int[]> ranges(final int size, final int chunkSize) {
+        final List<int[]> ranges = new ArrayList<>();
+        for (int from = 0; from < size; from += chunkSize) {
+            ranges.add(new int[]{from, Math.min(from + chunkSize, size)});
+        }
+        return ranges;
+    }
+
+    /**
+     * Runs tasks with at most parallelism tasks at the same time. Tasks run on
+     * the calling thread when parallelism is one.
+     *
+     * @param tasks Tasks to run
+     * @param parallelism Maximum number of concurrent tasks
+     * @return The results in the order of the tasks
+     * @throws OdooApiException The first exception thrown by a task, in task
+     * order
+     */
+    static <T> List<T> runAll(final List<? extends Callable<T>> tasks, final int parallelism) throws OdooApiException {
+        final List<T> results = new ArrayList<>(tasks.size());
+        if (parallelism <= 1 || tasks.size() <= 1) {
+            for (Callable<T> task : tasks) {
+                results.add(call(task));
+            }
+            return results;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()), runnable -> {
+            final Thread thread = new Thread(runnable, "odoo-batch-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new OdooApiException("Interrupted while waiting for a batch to finish", ex);
+        } catch (ExecutionException ex) {
+            throw unwrap(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> T call(final Callable<T> task) throws OdooApiException {
+        try {
+            return task.call();
+        } catch (Exception ex) {
+            throw unwrap(ex);
+        }
+    }
+
+    private static OdooApiException unwrap(final Throwable cause) {
+        if (cause instanceof OdooApiException) {
+            return (OdooApiException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new OdooApiException(cause);
+    }
+}
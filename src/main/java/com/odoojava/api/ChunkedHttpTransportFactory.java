@@ -0,0 +1,81 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URLConnection;
+
+import org.apache.xmlrpc.XmlRpcRequest;
+import org.apache.xmlrpc.client.XmlRpcClient;
+import org.apache.xmlrpc.client.XmlRpcClientException;
+import org.apache.xmlrpc.client.XmlRpcHttpClientConfig;
+import org.apache.xmlrpc.client.XmlRpcSun15HttpTransport;
+import org.apache.xmlrpc.client.XmlRpcSun15HttpTransportFactory;
+import org.apache.xmlrpc.client.XmlRpcTransport;
+
+/**
+ * Transport factory for requests that are streamed to the server. When the
+ * client config has content length optional set, the XML-RPC library writes
+ * the request directly to the connection instead of a byte array. The
+ * transport then switches the connection to chunked transfer encoding, so
+ * HttpURLConnection doesn't buffer the whole request either.
+ *
+ * Requests without content length optional are sent like the default
+ * transport does.
+ */
+class ChunkedHttpTransportFactory extends XmlRpcSun15HttpTransportFactory {
+
+    private Proxy proxy;
+
+    ChunkedHttpTransportFactory(XmlRpcClient client) {
+        super(client);
+    }
+
+    @Override
+    public void setProxy(Proxy proxy) {
+        super.setProxy(proxy);
+        this.proxy = proxy;
+    }
+
+    @Override
+    public XmlRpcTransport getTransport() {
+        final ChunkedHttpTransport transport = new ChunkedHttpTransport(getClient());
+        transport.setProxy(proxy);
+        return transport;
+    }
+
+    private static class ChunkedHttpTransport extends XmlRpcSun15HttpTransport {
+
+        ChunkedHttpTransport(XmlRpcClient client) {
+            super(client);
+        }
+
+        @Override
+        protected void initHttpHeaders(XmlRpcRequest request) throws XmlRpcClientException {
+            super.initHttpHeaders(request);
+            final XmlRpcHttpClientConfig config = (XmlRpcHttpClientConfig) request.getConfig();
+            final URLConnection connection = getURLConnection();
+            if (config.isContentLengthOptional() && connection instanceof HttpURLConnection) {
+                // 0 uses the default chunk size of the JDK
+                ((HttpURLConnection) connection).setChunkedStreamingMode(0);
+            }
+        }
+    }
+}
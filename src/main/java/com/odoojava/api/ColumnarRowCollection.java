@@ -0,0 +1,589 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Column oriented alternative to RowCollection for large, mostly numeric
+ * result sets. Values are kept in primitive arrays per field:
+ *
+ * INTEGER: int[], MANY2ONE: int[] of ids and dictionary encoded names, FLOAT:
+ * double[], DATE/DATETIME: long[] of epoch milliseconds (UTC), CHAR/SELECTION:
+ * dictionary encoded strings, BOOLEAN: a bitset. Other field types keep the
+ * value as returned by the server.
+ *
+ * Every column has a null bitmap. A MapRow view of a row can be created on
+ * demand with getRow(int). Changes to such a view are not written back to the
+ * collection.
+ *
+ * @author Pieter van der Merwe
+ *
+ */
+public class ColumnarRowCollection implements Iterable<MapRow>, Serializable {
+
+    private static final long serialVersionUID = 2769152391785066517L;
+
+    private final RowSchema schema;
+    private final int size;
+    private final int[] ids;
+    private final Column[] columns;
+
+    @SuppressWarnings("unchecked")
+    public ColumnarRowCollection(final Object[] openERPResultSet, final FieldCollection fields) {
+        this.schema = new RowSchema(fields);
+        this.size = openERPResultSet.length;
+        this.ids = new int[size];
+        this.columns = new Column[schema.size()];
+        for (int slot = 0; slot < columns.length; slot++) {
+            columns[slot] = Column.forField(schema.getField(slot), size);
+        }
+        for (int row = 0; row < size; row++) {
+            final Map<String, Object> openERPResult = (Map<String, Object>) openERPResultSet[row];
+            ids[row] = IdSet.toInt(openERPResult.get("id"));
+            for (int slot = 0; slot < columns.length; slot++) {
+                columns[slot].set(row, openERPResult.get(schema.getField(slot).getName()));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of rows in the collection
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    public RowSchema getSchema() {
+        return schema;
+    }
+
+    public FieldCollection getFields() {
+        return schema.getFields();
+    }
+
+    /**
+     * Returns the database ID of a row
+     *
+     * @param row Row index
+     * @return
+     */
+    public int getID(final int row) {
+        return ids[row];
+    }
+
+    /**
+     * Returns the database IDs of all rows
+     *
+     * @return
+     */
+    public IdSet getIdSet() {
+        return IdSet.of(ids);
+    }
+
+    /**
+     * Returns the column that holds the values of a field
+     *
+     * @param fieldName Name of the field
+     * @return The column. Cast it to the column type for the field type to
+     * read primitive values.
+     * @throws OdooApiException If the field isn't part of the collection
+     */
+    public Column getColumn(final String fieldName) throws OdooApiException {
+        final int slot = schema.indexOf(fieldName);
+        if (slot < 0) throw new OdooApiException("Field '" + fieldName + "' was not found in collection");
+        return columns[slot];
+    }
+
+    public IntColumn getIntColumn(final String fieldName) throws OdooApiException {
+        return getColumn(fieldName, IntColumn.class);
+    }
+
+    public Many2oneColumn getMany2oneColumn(final String fieldName) throws OdooApiException {
+        return getColumn(fieldName, Many2oneColumn.class);
+    }
+
+    public DoubleColumn getDoubleColumn(final String fieldName) throws OdooApiException {
+        return getColumn(fieldName, DoubleColumn.class);
+    }
+
+    public EpochColumn getEpochColumn(final String fieldName) throws OdooApiException {
+        return getColumn(fieldName, EpochColumn.class);
+    }
+
+    public StringColumn getStringColumn(final String fieldName) throws OdooApiException {
+        return getColumn(fieldName, StringColumn.class);
+    }
+
+    public BooleanColumn getBooleanColumn(final String fieldName) throws OdooApiException {
+        return getColumn(fieldName, BooleanColumn.class);
+    }
+
+    private <T extends Column> T getColumn(final String fieldName, final Class<T> columnType) throws OdooApiException {
+        final Column column = getColumn(fieldName);
+        if (!columnType.isInstance(column)) {
+            throw new OdooApiException("Field '" + fieldName + "' is not stored in a " + columnType.getSimpleName());
+        }
+        return columnType.cast(column);
+    }
+
+    /**
+     * Returns a row as a MapRow. The values are converted back to the format
+     * returned by the server.
+     *
+     * @param row Row index
+     * @return A new MapRow for the row
+     */
+    public MapRow getRow(final int row) {
+        final Object[] values = new Object[columns.length];
+        for (int slot = 0; slot < columns.length; slot++) {
+            values[slot] = columns[slot].get(row);
+        }
+        return new MapRow(schema, ids[row], values);
+    }
+
+    /**
+     * Converts the collection to a standard RowCollection
+     *
+     * @return
+     */
+    public RowCollection toRowCollection() {
+        final RowCollection rows = new RowCollection();
+        rows.ensureCapacity(size);
+        for (int row = 0; row < size; row++) {
+            rows.add(getRow(row));
+        }
+        return rows;
+    }
+
+    @Override
+    public Iterator<MapRow> iterator() {
+        return new Iterator<MapRow>() {
+            private int row = 0;
+
+            @Override
+            public boolean hasNext() {
+                return row < size;
+            }
+
+            @Override
+            public MapRow next() {
+                if (row >= size) throw new NoSuchElementException();
+                return getRow(row++);
+            }
+        };
+    }
+
+    /**
+     * Base class for a column of values
+     */
+    public abstract static class Column implements Serializable {
+
+        private static final long serialVersionUID = -3904186530214857911L;
+
+        protected final BitSet nulls;
+
+        Column(final int size) {
+            this.nulls = new BitSet(size);
+        }
+
+        static Column forField(final Field field, final int size) {
+            switch (field.getType()) {
+                case INTEGER:
+                    return new IntColumn(size);
+                case MANY2ONE:
+                    return new Many2oneColumn(size);
+                case FLOAT:
+                    return new DoubleColumn(size);
+                case DATE:
+                    return new EpochColumn(size, false);
+                case DATETIME:
+                    return new EpochColumn(size, true);
+                case CHAR:
+                case SELECTION:
+                    return new StringColumn(size);
+                case BOOLEAN:
+                    return new BooleanColumn(size);
+                default:
+                    return new ObjectColumn(size);
+            }
+        }
+
+        /**
+         * Returns true if the row doesn't have a value for this column
+         *
+         * @param row Row index
+         * @return
+         */
+        public boolean isNull(final int row) {
+            return nulls.get(row);
+        }
+
+        void set(final int row, final Object value) {
+            // Odoo returns false for empty non boolean fields
+            if (value == null || value instanceof Boolean || (value instanceof Object[] && ((Object[]) value).length == 0)) {
+                nulls.set(row);
+            } else {
+                setValue(row, value);
+            }
+        }
+
+        abstract void setValue(int row, Object value);
+
+        /**
+         * Returns the value in the format returned by the server
+         *
+         * @param row Row index
+         * @return
+         */
+        public abstract Object get(int row);
+    }
+
+    public static class IntColumn extends Column {
+
+        private static final long serialVersionUID = 6124880394861071548L;
+
+        private final int[] values;
+
+        IntColumn(final int size) {
+            super(size);
+            this.values = new int[size];
+        }
+
+        @Override
+        void setValue(final int row, final Object value) {
+            values[row] = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString());
+        }
+
+        /**
+         * Returns the value of a row, or 0 if the row doesn't have a value
+         *
+         * @param row Row index
+         * @return
+         */
+        public int getInt(final int row) {
+            return values[row];
+        }
+
+        public long sum() {
+            long sum = 0;
+            for (int value : values) sum += value;
+            return sum;
+        }
+
+        @Override
+        public Object get(final int row) {
+            return isNull(row) ? null : values[row];
+        }
+    }
+
+    public static class Many2oneColumn extends Column {
+
+        private static final long serialVersionUID = -4870245381962233615L;
+
+        private final int[] ids;
+        private final StringDictionary names;
+
+        Many2oneColumn(final int size) {
+            super(size);
+            this.ids = new int[size];
+            this.names = new StringDictionary(size);
+        }
+
+        @Override
+        void setValue(final int row, final Object value) {
+            if (value instanceof Object[]) {
+                final Object[] idName = (Object[]) value;
+                ids[row] = Integer.parseInt(idName[0].toString());
+                names.set(row, idName.length > 1 ? String.valueOf(idName[1]) : null);
+            } else {
+                ids[row] = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString());
+            }
+        }
+
+        /**
+         * Returns the related database ID of a row, or 0 if the row doesn't
+         * have a value
+         *
+         * @param row Row index
+         * @return
+         */
+        public int getId(final int row) {
+            return ids[row];
+        }
+
+        public String getName(final int row) {
+            return names.get(row);
+        }
+
+        @Override
+        public Object get(final int row) {
+            return isNull(row) ? null : new Object[]{ids[row], names.get(row)};
+        }
+    }
+
+    public static class DoubleColumn extends Column {
+
+        private static final long serialVersionUID = -1286426315049961728L;
+
+        private final double[] values;
+
+        DoubleColumn(final int size) {
+            super(size);
+            this.values = new double[size];
+        }
+
+        @Override
+        void setValue(final int row, final Object value) {
+            values[row] = value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+        }
+
+        /**
+         * Returns the value of a row, or 0 if the row doesn't have a value
+         *
+         * @param row Row index
+         * @return
+         */
+        public double getDouble(final int row) {
+            return values[row];
+        }
+
+        public double sum() {
+            double sum = 0;
+            for (double value : values) sum += value;
+            return sum;
+        }
+
+        @Override
+        public Object get(final int row) {
+            return isNull(row) ? null : values[row];
+        }
+    }
+
+    public static class EpochColumn extends Column {
+
+        private static final long serialVersionUID = 8750409281136458211L;
+
+        private final long[] values;
+        private final boolean dateTime;
+
+        EpochColumn(final int size, final boolean dateTime) {
+            super(size);
+            this.values = new long[size];
+            this.dateTime = dateTime;
+        }
+
+        @Override
+        void setValue(final int row, final Object value) {
+            if (dateTime) {
+                final Instant instant = ValueCodec.UTC.decodeDateTime(value);
+                if (instant == null) nulls.set(row);
+                else values[row] = instant.toEpochMilli();
+            } else {
+                final LocalDate date = ValueCodec.UTC.decodeDate(value);
+                if (date == null) nulls.set(row);
+                else values[row] = date.toEpochDay() * 86400000L;
+            }
+        }
+
+        /**
+         * Returns the value of a row in milliseconds since the epoch (UTC), or
+         * 0 if the row doesn't have a value
+         *
+         * @param row Row index
+         * @return
+         */
+        public long getEpochMillis(final int row) {
+            return values[row];
+        }
+
+        @Override
+        public Object get(final int row) {
+            if (isNull(row)) return null;
+            final Instant instant = Instant.ofEpochMilli(values[row]);
+            return dateTime ? ValueCodec.UTC.formatDateTime(instant) : ValueCodec.UTC.encodeDate(instant);
+        }
+    }
+
+    public static class StringColumn extends Column {
+
+        private static final long serialVersionUID = -5600453590937802736L;
+
+        private final StringDictionary values;
+
+        StringColumn(final int size) {
+            super(size);
+            this.values = new StringDictionary(size);
+        }
+
+        @Override
+        void setValue(final int row, final Object value) {
+            values.set(row, value.toString());
+        }
+
+        public String getString(final int row) {
+            return values.get(row);
+        }
+
+        /**
+         * Returns the dictionary code of a row. Rows with equal values have
+         * equal codes, which makes grouping cheap.
+         *
+         * @param row Row index
+         * @return The code or -1 if the row doesn't have a value
+         */
+        public int getCode(final int row) {
+            return values.getCode(row);
+        }
+
+        /**
+         * Returns the number of distinct values in the column
+         *
+         * @return
+         */
+        public int getDistinctCount() {
+            return values.getDistinctCount();
+        }
+
+        @Override
+        public Object get(final int row) {
+            return values.get(row);
+        }
+    }
+
+    public static class BooleanColumn extends Column {
+
+        private static final long serialVersionUID = 4131627393286745360L;
+
+        private final BitSet values;
+
+        BooleanColumn(final int size) {
+            super(size);
+            this.values = new BitSet(size);
+        }
+
+        @Override
+        void set(final int row, final Object value) {
+            if (value == null) nulls.set(row);
+            else setValue(row, value);
+        }
+
+        @Override
+        void setValue(final int row, final Object value) {
+            values.set(row, value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(value.toString()));
+        }
+
+        public boolean getBoolean(final int row) {
+            return values.get(row);
+        }
+
+        /**
+         * Returns the number of rows that are true
+         *
+         * @return
+         */
+        public int countTrue() {
+            return values.cardinality();
+        }
+
+        @Override
+        public Object get(final int row) {
+            return isNull(row) ? null : values.get(row);
+        }
+    }
+
+    public static class ObjectColumn extends Column {
+
+        private static final long serialVersionUID = -7377254939434911904L;
+
+        private final Object[] values;
+
+        ObjectColumn(final int size) {
+            super(size);
+            this.values = new Object[size];
+        }
+
+        @Override
+        void setValue(final int row, final Object value) {
+            values[row] = value;
+        }
+
+        @Override
+        public Object get(final int row) {
+            return values[row];
+        }
+    }
+
+    /**
+     * Dictionary encoded strings. Each row holds a code into a list of
+     * distinct values.
+     */
+    private static class StringDictionary implements Serializable {
+
+        private static final long serialVersionUID = 5166812075263920433L;
+
+        private final int[] codes;
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> codesByValue = new HashMap<>();
+
+        StringDictionary(final int size) {
+            this.codes = new int[size];
+            Arrays.fill(codes, -1);
+        }
+
+        void set(final int row, final String value) {
+            if (value == null) {
+                codes[row] = -1;
+                return;
+            }
+            Integer code = codesByValue.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                codesByValue.put(value, code);
+            }
+            codes[row] = code;
+        }
+
+        String get(final int row) {
+            final int code = codes[row];
+            return code < 0 ? null : dictionary.get(code);
+        }
+
+        int getCode(final int row) {
+            return codes[row];
+        }
+
+        int getDistinctCount() {
+            return dictionary.size();
+        }
+    }
+}
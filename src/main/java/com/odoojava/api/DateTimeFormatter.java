@@ -1,44 +1,39 @@
 package com.odoojava.api;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Date;
-import java.util.TimeZone;
 
+/**
+ * Static date helpers for values in the UTC server format. All conversions
+ * are done by the thread safe UTC ValueCodec.
+ */
 public class DateTimeFormatter {
 
-    private static final DateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
-
-    private static final DateFormat DATE_TIME_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-
-    static {
-        DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
-        DATE_TIME_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
-    }
-
     public static String formatDateTimeForWrite(Object value) {
-        return DATE_TIME_FORMAT.format(value);
+        return ValueCodec.UTC.encodeDateTime(value);
     }
 
     public static String formatDateForWrite(Object value) {
-        return DATE_FORMAT.format(value);
+        return ValueCodec.UTC.encodeDate(value);
     }
 
     public static Date parseDate(Object value) {
-        try {
-            return DATE_FORMAT.parse(String.valueOf(value));
-        } catch (ParseException e) {
-            return null;
-        }
+        final LocalDate date = ValueCodec.UTC.decodeDate(String.valueOf(value));
+        return date == null ? null : new Date(date.toEpochDay() * 86400000L);
     }
 
     public static Date parseDateTime(Object value) {
-        try {
-            return DATE_TIME_FORMAT.parse(String.valueOf(value));
-        } catch (ParseException e) {
-            return null;
-        }
+        final Instant instant = ValueCodec.UTC.decodeDateTime(String.valueOf(value));
+        return instant == null ? null : Date.from(instant);
+    }
+
+    public static LocalDate parseLocalDate(Object value) {
+        return ValueCodec.UTC.decodeDate(String.valueOf(value));
+    }
+
+    public static Instant parseInstant(Object value) {
+        return ValueCodec.UTC.decodeDateTime(String.valueOf(value));
     }
 
 }
@@ -0,0 +1,629 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Search domain as an expression tree of and, or, not and comparisons. The
+ * tree is written to the prefix notation of Odoo with toFilters or added to a
+ * FilterCollection.
+ *
+ * simplify returns an equivalent, usually smaller domain: nested ands and ors
+ * are flattened, duplicate terms are dropped, equalities on the same field
+ * that are or-ed are merged into one 'in' and comparisons that can't be true
+ * together reduce the domain to FALSE. ObjectAdapter simplifies a domain
+ * before searching and doesn't call the server when it is FALSE.
+ *
+ * For example: Domain.and(Domain.eq("state", "draft"),
+ * Domain.or(Domain.eq("partner_id", 7), Domain.eq("partner_id", 9)))
+ *
+ * Domains are immutable.
+ *
+ * @author Pieter van der Merwe
+ *
+ */
+public abstract class Domain {
+
+    /**
+     * Domain that matches all records
+     */
+    public static final Domain TRUE = new Constant(true);
+
+    /**
+     * Domain that matches no records
+     */
+    public static final Domain FALSE = new Constant(false);
+
+    private static final String AND = "&";
+    private static final String OR = "|";
+    private static final String NOT = "!";
+
+    private Domain() {
+    }
+
+    /**
+     * Creates a comparison
+     *
+     * @param fieldName Name of the field to compare
+     * @param comparison For example =, !=, >, >=, <, <=, like, ilike, in, not
+     * in, child_of
+     * @param value Value to compare with, PreparedFilter.PARAMETER for a
+     * value that is given when searching
+     * @return
+     */
+    public static Domain leaf(final String fieldName, final String comparison, final Object value) {
+        return new Leaf(Objects.requireNonNull(fieldName, "fieldName"), Objects.requireNonNull(comparison, "comparison"),
+                value);
+    }
+
+    public static Domain eq(final String fieldName, final Object value) {
+        return leaf(fieldName, "=", value);
+    }
+
+    public static Domain in(final String fieldName, final Object... values) {
+        return leaf(fieldName, "in", values);
+    }
+
+    public static Domain and(final Domain... operands) {
+        return and(Arrays.asList(operands));
+    }
+
+    public static Domain and(final Collection<Domain> operands) {
+        return junction(AND, operands);
+    }
+
+    public static Domain or(final Domain... operands) {
+        return or(Arrays.asList(operands));
+    }
+
+    public static Domain or(final Collection<Domain> operands) {
+        return junction(OR, operands);
+    }
+
+    public static Domain not(final Domain operand) {
+        return new Not(Objects.requireNonNull(operand, "operand"));
+    }
+
+    private static Domain junction(final String operator, final Collection<Domain> operands) {
+        if (operands.isEmpty()) {
+            return AND.equals(operator) ? TRUE : FALSE;
+        }
+        if (operands.size() == 1) {
+            return operands.iterator().next();
+        }
+        final List<Domain> copy = new ArrayList<>(operands);
+        for (Domain operand : copy) {
+            Objects.requireNonNull(operand, "operand");
+        }
+        return new Junction(operator, copy);
+    }
+
+    /**
+     * Parses the prefix notation of a FilterCollection. Terms that are not
+     * combined by an operator are and-ed, as on the server.
+     *
+     * @param filters Filters to parse
+     * @return
+     * @throws OdooApiException If the operators don't have enough operands
+     */
+    public static Domain of(final FilterCollection filters) throws OdooApiException {
+        final Object[] terms = filters.getFilters();
+        final int[] position = {0};
+        final List<Domain> operands = new ArrayList<>();
+        while (position[0] < terms.length) {
+            operands.add(parse(terms, position));
+        }
+        return and(operands);
+    }
+
+    private static Domain parse(final Object[] terms, final int[] position) throws OdooApiException {
+        if (position[0] >= terms.length) {
+            throw new OdooApiException("Filters aren't in the correct format, an operator is missing an operand");
+        }
+        final Object term = terms[position[0]++];
+        if (AND.equals(term)) {
+            return and(parse(terms, position), parse(terms, position));
+        }
+        if (OR.equals(term)) {
+            return or(parse(terms, position), parse(terms, position));
+        }
+        if (NOT.equals(term)) {
+            return not(parse(terms, position));
+        }
+        if (term instanceof Object[] && ((Object[]) term).length == 3) {
+            final Object[] comparison = (Object[]) term;
+            return leaf(comparison[0].toString(), comparison[1].toString(), comparison[2]);
+        }
+        throw new OdooApiException("Filters aren't in the correct format.  Please read the Odoo help.");
+    }
+
+    /**
+     * Returns true if the domain is TRUE, it matches all records
+     */
+    public boolean isTrue() {
+        return this == TRUE;
+    }
+
+    /**
+     * Returns true if the domain is FALSE, it matches no records
+     */
+    public boolean isFalse() {
+        return this == FALSE;
+    }
+
+    /**
+     * Simplifies the domain without knowing the fields. Only numeric values
+     * are merged, because a string compared with a relational field matches
+     * on names. Contradicting values are only detected for the id field.
+     *
+     * @return An equivalent domain
+     */
+    public Domain simplify() {
+        return simplify(new Rules(null));
+    }
+
+    /**
+     * Simplifies the domain using the types of the fields it compares. Values
+     * of fields that hold one value per record, which excludes one2many and
+     * many2many fields, are intersected when they are and-ed.
+     *
+     * @param fields Fields of the model the domain is for
+     * @return An equivalent domain
+     */
+    public Domain simplify(final FieldCollection fields) {
+        final Map<String, Field> fieldsByName = new HashMap<>(fields.size() * 2);
+        for (Field field : fields) {
+            fieldsByName.put(field.getName(), field);
+        }
+        return simplify(new Rules(fieldsByName));
+    }
+
+    abstract Domain simplify(Rules rules);
+
+    /**
+     * Returns the domain in the prefix notation of the Odoo search function.
+     * TRUE and FALSE are written as ('id', 'not in', []) and ('id', 'in', []).
+     *
+     * @return
+     */
+    public Object[] toFilters() {
+        final List<Object> out = new ArrayList<>();
+        write(out);
+        return out.toArray();
+    }
+
+    abstract void write(List<Object> out);
+
+    @Override
+    public String toString() {
+        return Arrays.deepToString(toFilters());
+    }
+
+    private static final class Constant extends Domain {
+
+        private final boolean value;
+
+        private Constant(final boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        Domain simplify(final Rules rules) {
+            return this;
+        }
+
+        @Override
+        void write(final List<Object> out) {
+            out.add(new Object[]{"id", value ? "not in" : "in", new Object[0]});
+        }
+    }
+
+    private static final class Leaf extends Domain {
+
+        private final String fieldName;
+        private final String comparison;
+        private final Object value;
+
+        private Leaf(final String fieldName, final String comparison, final Object value) {
+            this.fieldName = fieldName;
+            this.comparison = comparison;
+            this.value = value;
+        }
+
+        private boolean isParameter() {
+            return value == PreparedFilter.PARAMETER;
+        }
+
+        @Override
+        Domain simplify(final Rules rules) {
+            final List<Object> values = listValues(value);
+            if (values != null && values.isEmpty()) {
+                if ("in".equals(comparison)) return FALSE;
+                if ("not in".equals(comparison)) return TRUE;
+            }
+            return this;
+        }
+
+        @Override
+        void write(final List<Object> out) {
+            out.add(new Object[]{fieldName, comparison, value});
+        }
+
+        // A parameter only equals itself, so every parameter stays in the
+        // domain
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Leaf) || isParameter()) return false;
+            final Leaf other = (Leaf) obj;
+            return fieldName.equals(other.fieldName) && comparison.equals(other.comparison)
+                    && Objects.deepEquals(value, other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * fieldName.hashCode() + comparison.hashCode())
+                    + Arrays.deepHashCode(new Object[]{value});
+        }
+    }
+
+    private static final class Not extends Domain {
+
+        private final Domain operand;
+
+        private Not(final Domain operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        Domain simplify(final Rules rules) {
+            final Domain simple = operand.simplify(rules);
+            if (simple.isTrue()) return FALSE;
+            if (simple.isFalse()) return TRUE;
+            if (simple instanceof Not) return ((Not) simple).operand;
+            if (simple instanceof Leaf && !((Leaf) simple).isParameter()) {
+                // The server negates these comparisons the same way
+                final Leaf leaf = (Leaf) simple;
+                final String negated = negate(leaf.comparison);
+                if (negated != null) return new Leaf(leaf.fieldName, negated, leaf.value);
+            }
+            return simple == operand ? this : new Not(simple);
+        }
+
+        private static String negate(final String comparison) {
+            switch (comparison) {
+                case "=":
+                    return "!=";
+                case "!=":
+                    return "=";
+                case "in":
+                    return "not in";
+                case "not in":
+                    return "in";
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        void write(final List<Object> out) {
+            out.add(NOT);
+            operand.write(out);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Not && operand.equals(((Not) obj).operand);
+        }
+
+        @Override
+        public int hashCode() {
+            return ~operand.hashCode();
+        }
+    }
+
+    private static final class Junction extends Domain {
+
+        private final String operator;
+        private final List<Domain> operands;
+
+        private Junction(final String operator, final List<Domain> operands) {
+            this.operator = operator;
+            this.operands = operands;
+        }
+
+        private boolean isAnd() {
+            return AND.equals(operator);
+        }
+
+        @Override
+        Domain simplify(final Rules rules) {
+            final Domain identity = isAnd() ? TRUE : FALSE;
+            final Domain absorbing = isAnd() ? FALSE : TRUE;
+
+            // Flatten and drop duplicates and constants
+            final Set<Domain> flat = new LinkedHashSet<>();
+            for (Domain operand : operands) {
+                final Domain simple = operand.simplify(rules);
+                if (simple == absorbing) return absorbing;
+                if (simple == identity) continue;
+                if (simple instanceof Junction && ((Junction) simple).operator.equals(operator)) {
+                    flat.addAll(((Junction) simple).operands);
+                } else {
+                    flat.add(simple);
+                }
+            }
+
+            final List<Domain> result;
+            if (isAnd()) {
+                for (Domain operand : flat) {
+                    // A term and its negation can't both be true
+                    if (operand instanceof Not && flat.contains(((Not) operand).operand)) {
+                        return FALSE;
+                    }
+                }
+                result = mergeConjunction(flat, rules);
+                if (result == null) return FALSE;
+            } else {
+                result = mergeDisjunction(flat, rules);
+            }
+
+            if (result.isEmpty()) return identity;
+            if (result.size() == 1) return result.get(0);
+            return result.equals(operands) ? this : new Junction(operator, result);
+        }
+
+        // ('f', '=', a) or ('f', 'in', [b, c]) becomes ('f', 'in', [a, b, c])
+        private static List<Domain> mergeDisjunction(final Collection<Domain> operands, final Rules rules) {
+            final Map<String, Set<Object>> valuesByField = new LinkedHashMap<>();
+            final Map<String, Integer> countByField = new LinkedHashMap<>();
+            for (Domain operand : operands) {
+                final List<Object> values = inValues(operand, rules);
+                if (values != null) {
+                    final String fieldName = ((Leaf) operand).fieldName;
+                    valuesByField.computeIfAbsent(fieldName, key -> new LinkedHashSet<>()).addAll(values);
+                    countByField.merge(fieldName, 1, Integer::sum);
+                }
+            }
+
+            final List<Domain> result = new ArrayList<>(operands.size());
+            for (Domain operand : operands) {
+                final List<Object> values = inValues(operand, rules);
+                final String fieldName = values == null ? null : ((Leaf) operand).fieldName;
+                if (fieldName == null || countByField.get(fieldName) == 1) {
+                    result.add(operand);
+                } else if (valuesByField.containsKey(fieldName)) {
+                    // The merged term takes the place of the first one
+                    result.add(inLeaf(fieldName, valuesByField.remove(fieldName)));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Intersects the allowed values of single valued fields. Returns null
+         * if no value is left for a field.
+         */
+        private static List<Domain> mergeConjunction(final Collection<Domain> operands,
+                final Rules rules) {
+            final Map<String, Set<Object>> allowedByField = new LinkedHashMap<>();
+            final Map<String, Integer> countByField = new LinkedHashMap<>();
+            for (Domain operand : operands) {
+                final List<Object> values = inValues(operand, rules);
+                if (values != null && rules.isSingleValued(((Leaf) operand).fieldName)) {
+                    final String fieldName = ((Leaf) operand).fieldName;
+                    final Set<Object> allowed = allowedByField.get(fieldName);
+                    if (allowed == null) {
+                        allowedByField.put(fieldName, new LinkedHashSet<>(values));
+                    } else {
+                        allowed.retainAll(values);
+                    }
+                    countByField.merge(fieldName, 1, Integer::sum);
+                }
+            }
+            for (Domain operand : operands) {
+                final List<Object> values = notInValues(operand, rules);
+                final Set<Object> allowed = values == null ? null : allowedByField.get(((Leaf) operand).fieldName);
+                if (allowed != null) {
+                    allowed.removeAll(values);
+                    countByField.merge(((Leaf) operand).fieldName, 1, Integer::sum);
+                }
+            }
+            for (Set<Object> allowed : allowedByField.values()) {
+                if (allowed.isEmpty()) return null;
+            }
+
+            final List<Domain> result = new ArrayList<>(operands.size());
+            final Set<String> mergedFields = new HashSet<>();
+            for (Domain operand : operands) {
+                final boolean restricts = inValues(operand, rules) != null || notInValues(operand, rules) != null;
+                final String fieldName = restricts ? ((Leaf) operand).fieldName : null;
+                if (fieldName == null || !allowedByField.containsKey(fieldName) || countByField.get(fieldName) == 1) {
+                    result.add(operand);
+                } else if (mergedFields.add(fieldName)) {
+                    // The merged term takes the place of the first term of
+                    // the field, the others are implied by it
+                    result.add(inLeaf(fieldName, allowedByField.get(fieldName)));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        void write(final List<Object> out) {
+            for (int i = 1; i < operands.size(); i++) {
+                out.add(operator);
+            }
+            for (Domain operand : operands) {
+                operand.write(out);
+            }
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Junction && operator.equals(((Junction) obj).operator)
+                    && operands.equals(((Junction) obj).operands);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * operator.hashCode() + operands.hashCode();
+        }
+    }
+
+    private static Domain inLeaf(final String fieldName, final Set<Object> values) {
+        if (values.size() == 1) {
+            return new Leaf(fieldName, "=", values.iterator().next());
+        }
+        return new Leaf(fieldName, "in", values.toArray());
+    }
+
+    /**
+     * Values a term restricts a field to, for '=' and 'in' terms with values
+     * that can be merged. Null for other terms, including ('f', '=', false)
+     * which matches empty fields.
+     */
+    private static List<Object> inValues(final Domain domain, final Rules rules) {
+        return termValues(domain, "=", "in", rules);
+    }
+
+    /**
+     * Values a term excludes for a field, for '!=' and 'not in' terms
+     */
+    private static List<Object> notInValues(final Domain domain, final Rules rules) {
+        return termValues(domain, "!=", "not in", rules);
+    }
+
+    private static List<Object> termValues(final Domain domain, final String single, final String multiple,
+            final Rules rules) {
+        if (!(domain instanceof Leaf) || ((Leaf) domain).isParameter()) {
+            return null;
+        }
+        final Leaf leaf = (Leaf) domain;
+        final List<Object> values;
+        if (single.equals(leaf.comparison)) {
+            if (leaf.value == null || leaf.value instanceof Object[] || leaf.value instanceof Collection
+                    || leaf.value instanceof IdSet) {
+                return null;
+            }
+            values = Collections.singletonList(normalize(leaf.value));
+        } else if (multiple.equals(leaf.comparison)) {
+            values = listValues(leaf.value);
+        } else {
+            return null;
+        }
+        if (values == null) {
+            return null;
+        }
+        for (Object value : values) {
+            if (!rules.isMergeable(leaf.fieldName, value)) {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Values of an 'in' list, null if the value is not a list. Strings are
+     * comma separated lists that are only split by the adapter.
+     */
+    private static List<Object> listValues(final Object value) {
+        final List<Object> values = new ArrayList<>();
+        if (value instanceof Object[]) {
+            values.addAll(Arrays.asList((Object[]) value));
+        } else if (value instanceof Collection) {
+            values.addAll((Collection<?>) value);
+        } else if (value instanceof IdSet) {
+            ((IdSet) value).forEach(values::add);
+        } else {
+            return null;
+        }
+        for (int i = 0; i < values.size(); i++) {
+            final Object element = values.get(i);
+            if (element == null || element instanceof Boolean || element instanceof Object[]) {
+                return null;
+            }
+            values.set(i, normalize(element));
+        }
+        return values;
+    }
+
+    // So that 7, 7L and 7.0 compare equal. Integer is also what the server
+    // expects for IDs
+    private static Object normalize(final Object value) {
+        if (value instanceof Number && !(value instanceof Integer)) {
+            final double number = ((Number) value).doubleValue();
+            if (number == (int) number) {
+                return (int) number;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * What simplify may assume about the fields of a domain
+     */
+    static final class Rules {
+
+        // Null when the fields are not known
+        private final Map<String, Field> fieldsByName;
+
+        Rules(final Map<String, Field> fieldsByName) {
+            this.fieldsByName = fieldsByName;
+        }
+
+        /**
+         * Returns true if a record has at most one value for the field, so
+         * that different values can't both match
+         */
+        boolean isSingleValued(final String fieldName) {
+            if ("id".equals(fieldName)) return true;
+            final Field field = fieldsByName == null ? null : fieldsByName.get(fieldName);
+            return field != null && field.getType() != Field.FieldType.ONE2MANY
+                    && field.getType() != Field.FieldType.MANY2MANY;
+        }
+
+        /**
+         * Returns true if comparing the field with the value compares the
+         * values themselves. Strings compared with relational fields match on
+         * names and booleans match empty fields. A field only accepts one
+         * kind of value, so that 5 and "5" are never intersected.
+         */
+        boolean isMergeable(final String fieldName, final Object value) {
+            final Field field = fieldsByName == null ? null : fieldsByName.get(fieldName);
+            final boolean numeric = field == null || field.getType() == Field.FieldType.INTEGER
+                    || field.getType() == Field.FieldType.FLOAT || field.getType() == Field.FieldType.MANY2ONE
+                    || field.getType() == Field.FieldType.ONE2MANY || field.getType() == Field.FieldType.MANY2MANY;
+            if (value instanceof Number) return numeric;
+            return value instanceof String && !numeric;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of resolved external IDs (module.name to database ID) per
+ * model. Only IDs that were found or registered are cached, an unknown
+ * external ID is always looked up on the server. Adapters invalidate a model
+ * when they delete its records.
+ */
+final class ExternalIdCache {
+
+    static final int DEFAULT_MAX_ENTRIES_PER_MODEL = 50000;
+
+    private final Map<String, LinkedHashMap<String, Integer>> ids = new HashMap<>();
+    private final int maxEntriesPerModel;
+
+    ExternalIdCache() {
+        this(DEFAULT_MAX_ENTRIES_PER_MODEL);
+    }
+
+    ExternalIdCache(int maxEntriesPerModel) {
+        this.maxEntriesPerModel = maxEntriesPerModel;
+    }
+
+    synchronized Integer get(final String model, final String externalId) {
+        final Map<String, Integer> modelIds = ids.get(model);
+        return modelIds == null ? null : modelIds.get(externalId);
+    }
+
+    synchronized void put(final String model, final String externalId, final int id) {
+        ids.computeIfAbsent(model, key -> new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > maxEntriesPerModel;
+            }
+        }).put(externalId, id);
+    }
+
+    synchronized void invalidate(final String model) {
+        ids.remove(model);
+    }
+
+    synchronized void clear() {
+        ids.clear();
+    }
+}
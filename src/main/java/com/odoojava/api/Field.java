@@ -21,13 +21,20 @@ package com.odoojava.api;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * *
  * Provides OpenERP field properties like data types, selection fields etc.
  *
+ * The properties used on hot paths (type, required, readonly, relation and
+ * the selection options) are resolved once when the field is constructed, so
+ * the descriptor can be shared between rows and threads without further
+ * allocation.
+ *
  * @author Pieter van der Merwe
  *
  */
@@ -59,9 +66,49 @@ public class Field implements Serializable{
     private final String name;
     private final Map<String, Object> openERPFieldData;
 
+    @lombok.ToString.Exclude
+    private final FieldType type;
+    @lombok.ToString.Exclude
+    private final boolean required;
+    @lombok.ToString.Exclude
+    private final boolean readonly;
+    @lombok.ToString.Exclude
+    private final String relation;
+    // Selection code -> label, in server order. Null for non selection fields
+    @lombok.ToString.Exclude
+    private final Map<String, String> selectionLabelsByCode;
+    // Selection label -> code. Null for non selection fields
+    @lombok.ToString.Exclude
+    private final Map<String, String> selectionCodesByLabel;
+
     public Field(String fieldName, Map<String, Object> openERPFieldData) {
         this.openERPFieldData = openERPFieldData;
         this.name = fieldName;
+        this.type = FieldType.valueOfIgnoreCase((String) getFieldProperty("type"), FieldType.CHAR);
+        this.required = extractBoolean(getFieldProperty("required"), false);
+        this.readonly = extractBoolean(getFieldProperty("readonly"), false);
+        final Object relationValue = getFieldProperty("relation");
+        this.relation = relationValue == null ? "" : (String) relationValue;
+
+        if (this.type == FieldType.SELECTION) {
+            Map<String, String> labelsByCode = new LinkedHashMap<>();
+            Map<String, String> codesByLabel = new HashMap<>();
+            Object values = getFieldProperty("selection");
+            if (values instanceof Object[]) {
+                for (Object val : (Object[]) values) {
+                    Object[] multiVal = (Object[]) val;
+                    String code = multiVal[0].toString();
+                    String label = multiVal[1].toString();
+                    labelsByCode.putIfAbsent(code, label);
+                    codesByLabel.putIfAbsent(label, code);
+                }
+            }
+            this.selectionLabelsByCode = Collections.unmodifiableMap(labelsByCode);
+            this.selectionCodesByLabel = Collections.unmodifiableMap(codesByLabel);
+        } else {
+            this.selectionLabelsByCode = null;
+            this.selectionCodesByLabel = null;
+        }
     }
 
     /**
@@ -120,7 +167,7 @@ public class Field implements Serializable{
      * @return
      */
     public FieldType getType() {
-        return FieldType.valueOfIgnoreCase((String)getFieldProperty("type"), FieldType.CHAR);
+        return type;
     }    
 //    public FieldType getType() {
 //        final String fieldType = ((String) getFieldProperty("type")).toLowerCase();
@@ -148,18 +195,34 @@ public class Field implements Serializable{
      * @return
      */
     public ArrayList<SelectionOption> getSelectionOptions() {
-        if (this.getType() != FieldType.SELECTION) return null;
-
-        ArrayList<SelectionOption> options = new ArrayList<>();
-        Object values = getFieldProperty("selection");
-        if (values instanceof Object[]) {
-            for (Object val : (Object[]) values) {
-                Object[] multiVal = (Object[]) val;
-                options.add(new SelectionOption(multiVal[0].toString(), multiVal[1].toString()));
-            }
+        if (this.type != FieldType.SELECTION) return null;
+
+        ArrayList<SelectionOption> options = new ArrayList<>(selectionLabelsByCode.size());
+        for (Map.Entry<String, String> option : selectionLabelsByCode.entrySet()) {
+            options.add(new SelectionOption(option.getKey(), option.getValue()));
         }
         return options;
     }
+
+    /**
+     * If a field is a selection field, returns the label for a selection code.
+     *
+     * @param code Database code of the selection option
+     * @return The label or null if the code isn't a valid option
+     */
+    public String getSelectionLabel(String code) {
+        return selectionLabelsByCode == null ? null : selectionLabelsByCode.get(code);
+    }
+
+    /**
+     * If a field is a selection field, returns the code for a selection label.
+     *
+     * @param label Label of the selection option
+     * @return The code or null if the label isn't a valid option
+     */
+    public String getSelectionCode(String label) {
+        return selectionCodesByLabel == null ? null : selectionCodesByLabel.get(label);
+    }
     
     /**
      * Get the required property
@@ -167,7 +230,7 @@ public class Field implements Serializable{
      * @return
      */
     public boolean getRequired() {
-        return extractBoolean (getFieldProperty("required"), false);
+        return required;
     }
 
     /**
@@ -198,7 +261,8 @@ public class Field implements Serializable{
     }
     
     private boolean extractBoolean(final Object value, final boolean defaultValue) {
-        return value == null ? defaultValue : (Boolean) value;
+        if (value == null) return defaultValue;
+        else return (Boolean) (value instanceof Integer ? (Integer) value == 1 : value);
     }
     
     /**
@@ -226,8 +290,7 @@ public class Field implements Serializable{
      * @return
      */
     public String getRelation() {
-        final Object value = getFieldProperty("relation");
-        return value == null ? "" : (String) value;
+        return relation;
     }
 
     /**
@@ -236,9 +299,7 @@ public class Field implements Serializable{
      * @return
      */
     public boolean getReadonly() {
-        final Object value = getFieldProperty("readonly");
-        if (value == null) return false;
-        else return (Boolean) (value instanceof Integer ? (Integer) value == 1 : value);
+        return readonly;
     }
     
 }
@@ -19,6 +19,7 @@
 package com.odoojava.api;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -189,6 +190,18 @@ public class FilterCollection {
         return this;
     }
 
+    /**
+     * Adds a domain expression. It is added in prefix notation as one term,
+     * so it can also be the operand of a logical operator.
+     *
+     * @param domain Domain to add
+     * @return
+     */
+    public FilterCollection add(Domain domain) {
+        Collections.addAll(filters, domain.toFilters());
+        return this;
+    }
+
     /**
      * Clears the filter from previous filter values
      */
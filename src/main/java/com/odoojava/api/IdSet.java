@@ -0,0 +1,254 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable set of database IDs backed by a sorted int array. Set operations
+ * run as merges over the arrays, so large sets of IDs can be compared without
+ * creating an object per ID.
+ *
+ * The set is serialized as an XML-RPC array of ints by the proxy, so it can be
+ * passed to the server wherever a list of IDs is expected.
+ *
+ * @author Pieter van der Merwe
+ *
+ */
+public final class IdSet implements Serializable {
+
+    private static final long serialVersionUID = -6211529062014843245L;
+
+    private static final IdSet EMPTY = new IdSet(new int[0]);
+
+    private final int[] ids;
+
+    // The array must already be sorted and free of duplicates
+    private IdSet(final int[] ids) {
+        this.ids = ids;
+    }
+
+    public static IdSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a set from int values. Duplicates are removed.
+     *
+     * @param ids Database IDs
+     * @return
+     */
+    public static IdSet of(final int... ids) {
+        final int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        return new IdSet(distinct(sorted, sorted.length));
+    }
+
+    /**
+     * Creates a set from IDs returned by the server, for example by a search
+     * call.
+     *
+     * @param ids Integer objects or values that parse as ints
+     * @return
+     */
+    public static IdSet fromObjects(final Object[] ids) {
+        if (ids == null) return EMPTY;
+        final int[] values = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            values[i] = toInt(ids[i]);
+        }
+        Arrays.sort(values);
+        return new IdSet(distinct(values, values.length));
+    }
+
+    /**
+     * Creates a set from the IDs of rows
+     *
+     * @param rows Rows to take the IDs from
+     * @return
+     */
+    public static IdSet fromRows(final Collection<MapRow> rows) {
+        final int[] values = new int[rows.size()];
+        int i = 0;
+        for (MapRow row : rows) {
+            values[i++] = row.getID();
+        }
+        Arrays.sort(values);
+        return new IdSet(distinct(values, values.length));
+    }
+
+    static int toInt(final Object id) {
+        return id instanceof Integer ? (Integer) id : Integer.parseInt(String.valueOf(id));
+    }
+
+    private static int[] distinct(final int[] sorted, final int length) {
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) sorted[size++] = sorted[i];
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    /**
+     * Returns the ID at a position in the set. IDs are in ascending order.
+     *
+     * @param index Position in the set
+     * @return
+     */
+    public int get(final int index) {
+        return ids[index];
+    }
+
+    public boolean contains(final int id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    /**
+     * Returns the IDs that are in this set or in the other set
+     *
+     * @param other
+     * @return
+     */
+    public IdSet union(final IdSet other) {
+        if (other.isEmpty()) return this;
+        if (this.isEmpty()) return other;
+        final int[] result = new int[ids.length + other.ids.length];
+        int i = 0, j = 0, size = 0;
+        while (i < ids.length && j < other.ids.length) {
+            if (ids[i] < other.ids[j]) result[size++] = ids[i++];
+            else if (ids[i] > other.ids[j]) result[size++] = other.ids[j++];
+            else {
+                result[size++] = ids[i++];
+                j++;
+            }
+        }
+        while (i < ids.length) result[size++] = ids[i++];
+        while (j < other.ids.length) result[size++] = other.ids[j++];
+        return new IdSet(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * Returns the IDs that are in both sets
+     *
+     * @param other
+     * @return
+     */
+    public IdSet intersect(final IdSet other) {
+        final int[] result = new int[Math.min(ids.length, other.ids.length)];
+        int i = 0, j = 0, size = 0;
+        while (i < ids.length && j < other.ids.length) {
+            if (ids[i] < other.ids[j]) i++;
+            else if (ids[i] > other.ids[j]) j++;
+            else {
+                result[size++] = ids[i++];
+                j++;
+            }
+        }
+        return size == 0 ? EMPTY : new IdSet(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * Returns the IDs in this set that are not in the other set
+     *
+     * @param other
+     * @return
+     */
+    public IdSet difference(final IdSet other) {
+        if (other.isEmpty() || this.isEmpty()) return this;
+        final int[] result = new int[ids.length];
+        int i = 0, j = 0, size = 0;
+        while (i < ids.length) {
+            if (j >= other.ids.length || ids[i] < other.ids[j]) result[size++] = ids[i++];
+            else if (ids[i] > other.ids[j]) j++;
+            else {
+                i++;
+                j++;
+            }
+        }
+        return size == ids.length ? this : new IdSet(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * Returns a part of the set, for example to send IDs to the server in
+     * chunks.
+     *
+     * @param fromIndex First position, inclusive
+     * @param toIndex Last position, exclusive
+     * @return
+     */
+    public IdSet subSet(final int fromIndex, final int toIndex) {
+        if (fromIndex == 0 && toIndex == ids.length) return this;
+        return new IdSet(Arrays.copyOfRange(ids, fromIndex, toIndex));
+    }
+
+    public void forEach(final IntConsumer action) {
+        for (int id : ids) action.accept(id);
+    }
+
+    public IntStream stream() {
+        return Arrays.stream(ids);
+    }
+
+    /**
+     * Returns a copy of the IDs
+     *
+     * @return
+     */
+    public int[] toArray() {
+        return ids.clone();
+    }
+
+    /**
+     * Returns the IDs as Integer objects for APIs that need an Object[]
+     *
+     * @return
+     */
+    public Object[] toObjectArray() {
+        final Object[] result = new Object[ids.length];
+        for (int i = 0; i < ids.length; i++) result[i] = ids[i];
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof IdSet && Arrays.equals(ids, ((IdSet) obj).ids);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ids);
+    }
+
+    @Override
+    public String toString() {
+        return "IdSet" + Arrays.toString(ids);
+    }
+}
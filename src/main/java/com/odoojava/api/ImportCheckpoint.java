@@ -0,0 +1,239 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Checkpoint file for resumable imports. Every load call that the server
+ * committed is appended to the file with the row indexes and the IDs that
+ * were returned. When an import is started again with the same checkpoint
+ * file, the committed rows get their IDs back and are not sent again.
+ *
+ * The file starts with a SHA-256 hash of the model and the rows. Starting an
+ * import with different input is refused, so a checkpoint can't be applied
+ * to the wrong data. Use the checkpoint with the input as it was loaded from
+ * its source: IDs that the import sets on rows change the hash.
+ *
+ * @author Pieter van der Merwe
+ *
+ */
+public class ImportCheckpoint {
+
+    private static final String HEADER = "odoo-import-checkpoint 1";
+    private static final String HASH_PREFIX = "hash ";
+    private static final String ROWS_PREFIX = "rows ";
+
+    private final Path file;
+    private final Map<Integer, Integer> committedRows = new HashMap<>();
+    private FileOutputStream output;
+    private Writer writer;
+
+    /**
+     * @param file Checkpoint file. It is created when the import starts and
+     * read when it exists.
+     */
+    public ImportCheckpoint(final Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Opens the checkpoint for an input, reading committed rows of a previous
+     * run
+     *
+     * @param inputHash Hash of the input
+     * @throws OdooApiException If the file belongs to another input
+     */
+    synchronized void open(final String inputHash) throws OdooApiException {
+        committedRows.clear();
+        try {
+            if (Files.exists(file)) {
+                final boolean cutOff = read(inputHash);
+                output = new FileOutputStream(file.toFile(), true);
+                writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+                if (cutOff) {
+                    // Start a new line after the line that was cut off
+                    writer.write("\n");
+                    sync();
+                }
+            } else {
+                output = new FileOutputStream(file.toFile());
+                writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+                writer.write(HEADER + "\n" + HASH_PREFIX + inputHash + "\n");
+                sync();
+            }
+        } catch (IOException ex) {
+            throw new OdooApiException("Could not open import checkpoint " + file, ex);
+        }
+    }
+
+    // Returns true if the last line was cut off
+    private boolean read(final String inputHash) throws IOException, OdooApiException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            final String header = reader.readLine();
+            final String hash = reader.readLine();
+            if (!HEADER.equals(header) || hash == null || !hash.startsWith(HASH_PREFIX)) {
+                throw new OdooApiException("File " + file + " is not an import checkpoint");
+            }
+            if (!hash.substring(HASH_PREFIX.length()).equals(inputHash)) {
+                throw new OdooApiException("Import checkpoint " + file + " was created for different input");
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // A line that was cut off by a crash has no end marker and is ignored
+                if (line.startsWith(ROWS_PREFIX) && line.endsWith(";")) {
+                    for (String entry : line.substring(ROWS_PREFIX.length(), line.length() - 1).split(" ")) {
+                        final int separator = entry.indexOf('=');
+                        committedRows.put(Integer.parseInt(entry.substring(0, separator)),
+                                Integer.parseInt(entry.substring(separator + 1)));
+                    }
+                }
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            if (raf.length() == 0) {
+                return false;
+            }
+            raf.seek(raf.length() - 1);
+            return raf.read() != '\n';
+        }
+    }
+
+    /**
+     * Returns true if a previous run committed the row
+     */
+    synchronized boolean isCommitted(final int rowIndex) {
+        return committedRows.containsKey(rowIndex);
+    }
+
+    /**
+     * Returns the ID a previous run got for a committed row. 0 for servers that
+     * don't return IDs.
+     */
+    synchronized int getCommittedId(final int rowIndex) {
+        return committedRows.getOrDefault(rowIndex, 0);
+    }
+
+    /**
+     * Appends rows that the server committed and writes them to disk before
+     * returning
+     */
+    synchronized void recordCommitted(final int[] rowIndexes, final int[] ids) {
+        final StringBuilder line = new StringBuilder(ROWS_PREFIX);
+        for (int i = 0; i < rowIndexes.length; i++) {
+            if (i > 0) {
+                line.append(' ');
+            }
+            line.append(rowIndexes[i]).append('=').append(ids[i]);
+            committedRows.put(rowIndexes[i], ids[i]);
+        }
+        line.append(";\n");
+        try {
+            writer.write(line.toString());
+            sync();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not write import checkpoint " + file, ex);
+        }
+    }
+
+    private void sync() throws IOException {
+        writer.flush();
+        output.getFD().sync();
+    }
+
+    /**
+     * Closes the file. The file is kept so a following run can continue.
+     */
+    synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                // Every line was already synced
+            }
+            writer = null;
+            output = null;
+        }
+    }
+
+    /**
+     * Deletes the checkpoint file, for example after the import completed
+     *
+     * @throws IOException
+     */
+    public synchronized void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+        committedRows.clear();
+    }
+
+    /**
+     * Calculates the hash that ties a checkpoint to its input
+     *
+     * @param modelName Model the rows are imported into
+     * @param rows Rows to import
+     * @return Hex encoded SHA-256 hash
+     */
+    static String hash(final String modelName, final RowCollection rows) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+        update(digest, modelName);
+        for (MapRow mapRow : rows) {
+            update(digest, Integer.toString(mapRow.getID()));
+            for (Field field : mapRow.getFields()) {
+                final Object value = mapRow.get(field);
+                update(digest, field.getName());
+                update(digest, value instanceof Object[] ? Arrays.deepToString((Object[]) value) : String.valueOf(value));
+            }
+        }
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void update(final MessageDigest digest, final String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        // Separator, so that ("ab", "c") and ("a", "bc") differ
+        digest.update((byte) 0);
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Result of a chunked import. Keeps the database ID of every imported row,
+ * the rows that failed and the messages returned by the server.
+ *
+ * Row numbers are indexes in the RowCollection that was imported.
+ *
+ * @author Pieter van der Merwe
+ *
+ */
+public class ImportReport {
+
+    private final int[] ids;
+    private final BitSet importedRows;
+    private final BitSet failedRows;
+    // Messages by the first row they apply to. Chunks finish in any order,
+    // the messages are reported in row order.
+    private final TreeMap<Integer, List<String>> messages = new TreeMap<>();
+    private int chunkCount;
+    private int failedChunkCount;
+    private int resumedRowCount;
+    private final Map<String, Set<String>> unresolvedValues = new TreeMap<>();
+    // Committed chunks are written to the checkpoint, if the import has one
+    private final ImportCheckpoint checkpoint;
+
+    ImportReport(final int rowCount) {
+        this(rowCount, null);
+    }
+
+    ImportReport(final int rowCount, final ImportCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        this.ids = new int[rowCount];
+        this.importedRows = new BitSet(rowCount);
+        this.failedRows = new BitSet(rowCount);
+    }
+
+    synchronized void recordSuccess(final int[] rowIndexes, final int[] rowIds) {
+        if (checkpoint != null) {
+            checkpoint.recordCommitted(rowIndexes, rowIds);
+        }
+        chunkCount++;
+        for (int i = 0; i < rowIndexes.length; i++) {
+            ids[rowIndexes[i]] = rowIds[i];
+            importedRows.set(rowIndexes[i]);
+            failedRows.clear(rowIndexes[i]);
+        }
+    }
+
+    synchronized void recordFailure(final int[] rowIndexes, final String message) {
+        chunkCount++;
+        failedChunkCount++;
+        for (int rowIndex : rowIndexes) {
+            failedRows.set(rowIndex);
+        }
+        addMessage(rowIndexes[0], describeRows(rowIndexes) + ": " + message);
+    }
+
+    synchronized void recordUnresolved(final String relation, final Set<String> values) {
+        unresolvedValues.computeIfAbsent(relation, key -> new TreeSet<>()).addAll(values);
+    }
+
+    /**
+     * Records a row that a previous run committed, according to the checkpoint
+     */
+    synchronized void recordResumed(final int rowIndex, final int rowId) {
+        ids[rowIndex] = rowId;
+        importedRows.set(rowIndex);
+        resumedRowCount++;
+    }
+
+    synchronized void recordRowFailure(final int rowIndex, final String message) {
+        failedRows.set(rowIndex);
+        addMessage(rowIndex, describeRows(new int[]{rowIndex}) + ": " + message);
+    }
+
+    private void addMessage(final int firstRow, final String message) {
+        messages.computeIfAbsent(firstRow, key -> new ArrayList<>(1)).add(message);
+    }
+
+    private static String describeRows(final int[] rowIndexes) {
+        if (rowIndexes.length == 1) {
+            return "Row " + rowIndexes[0];
+        }
+        return "Rows " + rowIndexes[0] + "-" + rowIndexes[rowIndexes.length - 1];
+    }
+
+    public int getRowCount() {
+        return ids.length;
+    }
+
+    /**
+     * Returns true if all rows were imported
+     *
+     * @return
+     */
+    public synchronized boolean isSuccessful() {
+        return failedRows.isEmpty();
+    }
+
+    /**
+     * Returns the database ID of an imported row. Servers older than V7 don't
+     * return IDs, the ID will be 0 for those.
+     *
+     * @param rowIndex Index of the row in the imported collection
+     * @return The database ID or 0 if the row was not imported
+     */
+    public synchronized int getId(final int rowIndex) {
+        return ids[rowIndex];
+    }
+
+    /**
+     * Returns the database IDs of all imported rows
+     *
+     * @return
+     */
+    public synchronized IdSet getIds() {
+        return IdSet.of(importedRows.stream().map(i -> ids[i]).filter(id -> id > 0).toArray());
+    }
+
+    public synchronized int getImportedRowCount() {
+        return importedRows.cardinality();
+    }
+
+    /**
+     * Returns the indexes of the rows that were not imported. Use it to build a
+     * collection of rows to retry.
+     *
+     * @return
+     */
+    public synchronized int[] getFailedRows() {
+        return failedRows.stream().toArray();
+    }
+
+    /**
+     * Returns the rows of a collection that were not imported
+     *
+     * @param rows The collection that was imported
+     * @return A new collection with the failed rows
+     */
+    public RowCollection getFailedRows(final RowCollection rows) {
+        final RowCollection failed = new RowCollection();
+        for (int rowIndex : getFailedRows()) {
+            failed.add(rows.get(rowIndex));
+        }
+        return failed;
+    }
+
+    /**
+     * Returns the error messages, one per failed chunk or row, in row order.
+     * Each message starts with the rows it applies to.
+     *
+     * @return
+     */
+    public synchronized List<String> getMessages() {
+        final List<String> result = new ArrayList<>();
+        messages.values().forEach(result::addAll);
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Returns the many2one texts that could not be resolved to a record, per
+     * related model. The rows that use them are reported as failed.
+     *
+     * @return
+     */
+    public synchronized Map<String, Set<String>> getUnresolvedValues() {
+        final Map<String, Set<String>> result = new TreeMap<>();
+        unresolvedValues.forEach((relation, values) -> result.put(relation, Collections.unmodifiableSet(new TreeSet<>(values))));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns all error messages separated by new lines
+     *
+     * @return
+     */
+    public synchronized String getErrorMessage() {
+        return String.join("\n", getMessages());
+    }
+
+    /**
+     * Returns the number of chunks that were sent. A bisected chunk counts as
+     * the parts it was split in.
+     *
+     * @return
+     */
+    public synchronized int getChunkCount() {
+        return chunkCount;
+    }
+
+    public synchronized int getFailedChunkCount() {
+        return failedChunkCount;
+    }
+
+    /**
+     * Returns the number of rows that were committed by a previous run and
+     * skipped, see ImportCheckpoint
+     *
+     * @return
+     */
+    public synchronized int getResumedRowCount() {
+        return resumedRowCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ImportReport(rows=" + ids.length + ", imported=" + importedRows.cardinality() + ", failed="
+                + failedRows.cardinality() + ", chunks=" + chunkCount + ", failedChunks=" + failedChunkCount + ")";
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.xmlrpc.XmlRpcException;
+
+/**
+ * Resolves many2one values that are given as text, like a partner name or a
+ * product code, to database IDs for the import function. All distinct texts
+ * of a relation are looked up with search_read calls on the lookup fields of
+ * the relation, one field after the other for the texts that are still
+ * missing, so the number of calls doesn't depend on the number of texts.
+ *
+ * The IDs of a chunk are returned to the caller, which converts the chunk from
+ * them. The bounded cache per relation only saves lookups for later chunks. A
+ * text that matches more than one record is not resolved.
+ */
+final class Many2oneResolver {
+
+    static final String DEFAULT_LOOKUP_FIELD = "name";
+    static final int DEFAULT_MAX_ENTRIES_PER_RELATION = 10000;
+
+    // Number of texts in one search_read call
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    private final Map<String, List<String>> lookupFields = new ConcurrentHashMap<>();
+    private final Map<String, LinkedHashMap<String, Integer>> ids = new HashMap<>();
+    private final int maxEntriesPerRelation;
+
+    Many2oneResolver() {
+        this(DEFAULT_MAX_ENTRIES_PER_RELATION);
+    }
+
+    Many2oneResolver(int maxEntriesPerRelation) {
+        this.maxEntriesPerRelation = maxEntriesPerRelation;
+    }
+
+    List<String> getLookupFields(final String relation) {
+        return lookupFields.getOrDefault(relation, Collections.singletonList(DEFAULT_LOOKUP_FIELD));
+    }
+
+    synchronized void setLookupFields(final String relation, final List<String> fields) {
+        lookupFields.put(relation, Collections.unmodifiableList(new ArrayList<>(fields)));
+        ids.remove(relation);
+    }
+
+    synchronized Integer get(final String relation, final String text) {
+        final Map<String, Integer> relationIds = ids.get(relation);
+        return relationIds == null ? null : relationIds.get(text);
+    }
+
+    private synchronized void put(final String relation, final String text, final int id) {
+        ids.computeIfAbsent(relation, key -> new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > maxEntriesPerRelation;
+            }
+        }).put(text, id);
+    }
+
+    synchronized void clear() {
+        ids.clear();
+    }
+
+    /**
+     * Resolves texts, looking up the ones that are not cached yet
+     *
+     * @param command Command to call the server with
+     * @param relation Related model
+     * @param texts Texts to resolve
+     * @return The ID of every text that could be resolved. Texts that are
+     * missing from the map could not be resolved.
+     * @throws XmlRpcException
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Integer> resolve(final OdooCommand command, final String relation, final Collection<String> texts)
+            throws XmlRpcException {
+        final Map<String, Integer> resolved = new HashMap<>();
+        final Set<String> missing = new LinkedHashSet<>();
+        for (String text : texts) {
+            final Integer id = get(relation, text);
+            if (id != null) {
+                resolved.put(text, id);
+            } else {
+                missing.add(text);
+            }
+        }
+
+        for (String lookupField : getLookupFields(relation)) {
+            if (missing.isEmpty()) {
+                break;
+            }
+            final List<String> pending = new ArrayList<>(missing);
+            final Map<String, List<Integer>> matches = new HashMap<>();
+            for (int[] range : BatchSupport.ranges(pending.size(), LOOKUP_CHUNK_SIZE)) {
+                final Object[] filter = new Object[]{
+                    new Object[]{lookupField, "in", pending.subList(range[0], range[1]).toArray()}};
+                for (Object result : command.searchReadObject(relation, filter, new String[]{lookupField})) {
+                    final Map<String, Object> record = (Map<String, Object>) result;
+                    matches.computeIfAbsent(String.valueOf(record.get(lookupField)), key -> new ArrayList<>(1))
+                            .add(IdSet.toInt(record.get("id")));
+                }
+            }
+            for (Entry<String, List<Integer>> match : matches.entrySet()) {
+                final String text = match.getKey();
+                if (!missing.remove(text)) {
+                    continue;
+                }
+                // Ambiguous texts are not tried on the next field either
+                if (match.getValue().size() == 1) {
+                    final int id = match.getValue().get(0);
+                    resolved.put(text, id);
+                    put(relation, text, id);
+                }
+            }
+        }
+        return resolved;
+    }
+}
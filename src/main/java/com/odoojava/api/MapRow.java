@@ -1,50 +1,116 @@
 package com.odoojava.api;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
 import java.util.HashMap;
 import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
 
 public class MapRow implements Serializable {
 
     private static final long serialVersionUID = 8593471239365171312L;
-    
-    private final HashMap<String, Object> openERPResult;
-    private final FieldCollection fields;
-    private final List<RowChangedListener> rowChangedListeners;
-    private final FieldCollection changedFields;
+
+    // Field values are kept in slots defined by a schema that is shared with
+    // the other rows of the same RowCollection
+    private final RowSchema schema;
+    private final Object[] values;
+    private final BitSet changedSlots;
+    private int id;
+    // Only allocated when the first listener is added
+    private List<RowChangedListener> rowChangedListeners;
+    // Parsed form of string values (dates, numbers), per slot. Only allocated
+    // when the first value is parsed and cleared for a slot when it is changed
+    private transient Object[] decodedValues;
 
     public MapRow(final HashMap<String, Object> openERPResult, final FieldCollection fields) throws OdooApiException {
-        this.changedFields = new FieldCollection();
-        this.rowChangedListeners = new ArrayList<>();
-        this.openERPResult = openERPResult;
-        this.fields = fields;
+        this(openERPResult, new RowSchema(fields));
+    }
+
+    public MapRow(final Map<String, Object> openERPResult, final RowSchema schema) throws OdooApiException {
+        this(openERPResult, schema, null);
+    }
+
+    /**
+     * Creates a row from a server result, sharing repeated strings through
+     * the pool of the result set
+     */
+    MapRow(final Map<String, Object> openERPResult, final RowSchema schema, final StringPool stringPool) {
+        this.schema = schema;
+        this.values = new Object[schema.size()];
+        this.changedSlots = new BitSet(schema.size());
         if (openERPResult.isEmpty()) {
-            this.put("id", 0);
-            for (int i = 0; i < fields.size(); ++i) {
-                this.put(fields.get(i).getName(), null);
+            // A new row, all fields have to be submitted
+            this.id = 0;
+            this.changedSlots.set(0, schema.size());
+        } else {
+            this.id = toID(openERPResult.get("id"));
+            for (int i = 0; i < values.length; ++i) {
+                final Field field = schema.getField(i);
+                final Object value = openERPResult.get(field.getName());
+                this.values[i] = stringPool == null ? value : stringPool.internValue(field.getType(), value);
             }
         }
     }
 
+    MapRow(final RowSchema schema, final int id, final Object[] values) {
+        this.schema = schema;
+        this.values = values;
+        this.changedSlots = new BitSet(schema.size());
+        this.id = id;
+    }
+
     public int getID() {
-        return Integer.parseInt(String.valueOf(this.get("id")));
+        return id;
+    }
+
+    /**
+     * Returns the value of a slot as it was returned by the server
+     */
+    Object getRawValue(final int slot) {
+        return values[slot];
+    }
+
+    // Rows without a database ID (new rows, function results) use 0
+    private static int toID(final Object value) {
+        if (value == null || value instanceof Boolean) return 0;
+        if (value instanceof Number) return ((Number) value).intValue();
+        return Integer.parseInt(value.toString());
     }
 
     public void addRowChangedLisener(final RowChangedListener listener) {
+        if (rowChangedListeners == null) rowChangedListeners = new ArrayList<>(1);
         if (!rowChangedListeners.contains(listener)) rowChangedListeners.add(listener);
     }
 
+    public void removeRowChangedListener(final RowChangedListener listener) {
+        if (rowChangedListeners != null) rowChangedListeners.remove(listener);
+    }
+
     public MapRow(final MapRow templateMapRow) {
-        this.changedFields = new FieldCollection();
-        this.rowChangedListeners = new ArrayList<>();
-        this.openERPResult = (HashMap<String, Object>) templateMapRow.openERPResult.clone();
-        this.fields = (FieldCollection) templateMapRow.fields.clone();
+        this.schema = templateMapRow.schema;
+        this.values = templateMapRow.values.clone();
+        this.changedSlots = new BitSet(schema.size());
+        this.id = templateMapRow.id;
     }
 
     public FieldCollection getFields() {
-        return fields;
+        return schema.getFields();
+    }
+
+    /**
+     * Returns the schema that maps the fields of this row to value slots
+     *
+     * @return
+     */
+    public RowSchema getSchema() {
+        return schema;
     }
 
     public Object get(final Field field) {
@@ -53,14 +119,14 @@ public class MapRow implements Serializable {
 
     public Object get(final String fieldName) {
         if (fieldName != null && fieldName.equals("id")) {
-            return this.openERPResult.get(fieldName);
+            return this.id;
         }
-        final Field fieldMeta = this.getField(fieldName);
-        if (fieldMeta == null) {
+        final int slot = schema.indexOf(fieldName);
+        if (slot < 0) {
             return null;
         }
-        final Object value = this.openERPResult.get(fieldName);
-        final Field.FieldType fieldType = fieldMeta.getType();
+        final Object value = this.values[slot];
+        final Field.FieldType fieldType = schema.getField(slot).getType();
         if (fieldType != Field.FieldType.BOOLEAN && value instanceof Boolean) {
             return null;
         }
@@ -68,48 +134,220 @@ public class MapRow implements Serializable {
             return null;
         }
         if (value instanceof String && fieldType == Field.FieldType.DATE) {
-            return DateTimeFormatter.parseDate(value);
+            final LocalDate date = getLocalDate(slot);
+            return date == null ? null : Date.from(date.atStartOfDay(ZoneOffset.UTC).toInstant());
         }
         if (value instanceof String && fieldType == Field.FieldType.DATETIME) {
-            return DateTimeFormatter.parseDateTime(value);
+            final Instant instant = getInstant(slot);
+            return instant == null ? null : Date.from(instant);
         }
         return value;
     }
 
-    private Field getField(final String fieldName) {
-        return this.fields.stream()
-                .filter(fld -> fld.getName().equals(fieldName))
-                .findAny()
-                .orElse(null);
+    /**
+     * Returns an integer value without boxing. Many2one fields return the
+     * related ID.
+     *
+     * @param fieldName Name of the field
+     * @return The value or 0 if the field is empty
+     * @throws OdooApiException If the field isn't part of the row
+     */
+    public int getInt(final String fieldName) throws OdooApiException {
+        if ("id".equals(fieldName)) return id;
+        final int slot = getSlot(fieldName);
+        final Object value = values[slot];
+        if (value instanceof Number) return ((Number) value).intValue();
+        if (value instanceof Object[]) return getMany2oneId(slot);
+        if (value instanceof String) return ((Number) decode(slot, value, Field.FieldType.INTEGER)).intValue();
+        return 0;
+    }
+
+    /**
+     * Returns a float value without boxing
+     *
+     * @param fieldName Name of the field
+     * @return The value or 0 if the field is empty
+     * @throws OdooApiException If the field isn't part of the row
+     */
+    public double getDouble(final String fieldName) throws OdooApiException {
+        final int slot = getSlot(fieldName);
+        final Object value = values[slot];
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        if (value instanceof String) return ((Number) decode(slot, value, Field.FieldType.FLOAT)).doubleValue();
+        return 0;
+    }
+
+    /**
+     * Returns a boolean value
+     *
+     * @param fieldName Name of the field
+     * @return The value or false if the field is empty
+     * @throws OdooApiException If the field isn't part of the row
+     */
+    public boolean getBoolean(final String fieldName) throws OdooApiException {
+        final Object value = values[getSlot(fieldName)];
+        if (value instanceof Boolean) return (Boolean) value;
+        return value != null && Boolean.parseBoolean(value.toString());
+    }
+
+    /**
+     * Returns a date value. The string returned by the server is parsed once
+     * and cached in the row. For datetime fields the UTC date is returned.
+     *
+     * @param fieldName Name of the field
+     * @return The date or null if the field is empty
+     * @throws OdooApiException If the field isn't part of the row
+     */
+    public LocalDate getLocalDate(final String fieldName) throws OdooApiException {
+        return getLocalDate(getSlot(fieldName));
+    }
+
+    private LocalDate getLocalDate(final int slot) {
+        final Object value = values[slot];
+        if (!(value instanceof String)) return null;
+        if (schema.getField(slot).getType() == Field.FieldType.DATETIME) {
+            final Instant instant = getInstant(slot);
+            return instant == null ? null : instant.atOffset(ZoneOffset.UTC).toLocalDate();
+        }
+        return (LocalDate) decode(slot, value, Field.FieldType.DATE);
+    }
+
+    /**
+     * Returns a datetime value. The string returned by the server is parsed
+     * once and cached in the row. For date fields the start of the day (UTC)
+     * is returned.
+     *
+     * @param fieldName Name of the field
+     * @return The instant or null if the field is empty
+     * @throws OdooApiException If the field isn't part of the row
+     */
+    public Instant getInstant(final String fieldName) throws OdooApiException {
+        return getInstant(getSlot(fieldName));
+    }
+
+    private Instant getInstant(final int slot) {
+        final Object value = values[slot];
+        if (!(value instanceof String)) return null;
+        if (schema.getField(slot).getType() == Field.FieldType.DATE) {
+            final LocalDate date = getLocalDate(slot);
+            return date == null ? null : date.atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+        return (Instant) decode(slot, value, Field.FieldType.DATETIME);
+    }
+
+    /**
+     * Returns the related ID of a many2one field
+     *
+     * @param fieldName Name of the field
+     * @return The ID or 0 if the field is empty
+     * @throws OdooApiException If the field isn't part of the row
+     */
+    public int getMany2oneId(final String fieldName) throws OdooApiException {
+        return getMany2oneId(getSlot(fieldName));
+    }
+
+    private int getMany2oneId(final int slot) {
+        final Object value = values[slot];
+        if (value instanceof Number) return ((Number) value).intValue();
+        if (value instanceof Object[] && ((Object[]) value).length > 0) {
+            final Object relatedId = ((Object[]) value)[0];
+            return relatedId instanceof Number ? ((Number) relatedId).intValue() : IdSet.toInt(relatedId);
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the display name of a many2one field
+     *
+     * @param fieldName Name of the field
+     * @return The name or null if the field is empty or was read without names
+     * @throws OdooApiException If the field isn't part of the row
+     */
+    public String getMany2oneName(final String fieldName) throws OdooApiException {
+        final Object value = values[getSlot(fieldName)];
+        if (value instanceof Object[] && ((Object[]) value).length > 1) {
+            final Object name = ((Object[]) value)[1];
+            return name == null ? null : name.toString();
+        }
+        return null;
+    }
+
+    private int getSlot(final String fieldName) throws OdooApiException {
+        final int slot = schema.indexOf(fieldName);
+        if (slot < 0) throw new OdooApiException("Field '" + fieldName + "' was not found in row");
+        return slot;
+    }
+
+    // Parses a string value to the given type once and caches the result
+    private Object decode(final int slot, final Object value, final Field.FieldType type) {
+        Object[] decoded = decodedValues;
+        if (decoded == null) {
+            decoded = new Object[values.length];
+            decodedValues = decoded;
+        }
+        Object result = decoded[slot];
+        if (!isDecodedAs(result, type)) {
+            switch (type) {
+                case INTEGER:
+                    result = Integer.valueOf(value.toString().trim());
+                    break;
+                case FLOAT:
+                    result = Double.valueOf(value.toString().trim());
+                    break;
+                case DATE:
+                    result = ValueCodec.UTC.decodeDate(value);
+                    break;
+                default:
+                    result = ValueCodec.UTC.decodeDateTime(value);
+                    break;
+            }
+            decoded[slot] = result;
+        }
+        return result;
+    }
+
+    private static boolean isDecodedAs(final Object decoded, final Field.FieldType type) {
+        switch (type) {
+            case INTEGER:
+            case FLOAT:
+                return decoded instanceof Number;
+            case DATE:
+                return decoded instanceof LocalDate;
+            default:
+                return decoded instanceof Instant;
+        }
     }
 
     public final void put(final String fieldName, Object value) throws OdooApiException {
         if (fieldName.equals("id")) {
-            openERPResult.put(fieldName, value);
+            this.id = toID(value);
             return;
         }
-        final Field fld = this.getField(fieldName);
-        if (fld == null) throw new OdooApiException("Field '" + fieldName + "' was not found in row");
+        final int slot = schema.indexOf(fieldName);
+        if (slot < 0) throw new OdooApiException("Field '" + fieldName + "' was not found in row");
+        final Field fld = schema.getField(slot);
         final Field.FieldType fieldType = fld.getType();
-        if (fieldType == Field.FieldType.ONE2MANY) value = new Object[]{value, null};
-        if (this.openERPResult.containsKey(fieldName)) {
-            final Object oldValue = openERPResult.get(fieldName);
+        if (fieldType == Field.FieldType.ONE2MANY && !(value instanceof X2ManyCommands)) value = new Object[]{value, null};
+        // The value and its changed flag are set together, so a flush that
+        // takes the changes never sees one without the other
+        synchronized (this) {
+            final Object oldValue = values[slot];
             if (oldValue == null && value == null) return;
-            if ((oldValue != null || value == null) && (oldValue == null || value != null) && value.equals(oldValue)) {
-                return;
-            }
-            openERPResult.remove(fieldName);
+            if (oldValue != null && value != null && value.equals(oldValue)) return;
+            this.values[slot] = value;
+            if (this.decodedValues != null) this.decodedValues[slot] = null;
+            this.changedSlots.set(slot);
         }
-        this.openERPResult.put(fieldName, value);
-        this.getChangedFields().add(fld);
-        for (final RowChangedListener listener : this.rowChangedListeners) {
-            listener.rowChanged(fld, this);
+        if (this.rowChangedListeners != null) {
+            for (final RowChangedListener listener : this.rowChangedListeners) {
+                listener.rowChanged(fld, this);
+            }
         }
     }
 
     public void putMany2ManyValue(final String fieldName, final Object[] values, final boolean append) throws OdooApiException {
-        final Field fld = this.getField(fieldName);
-        if (fld.getType() != Field.FieldType.MANY2MANY)
+        final int slot = schema.indexOf(fieldName);
+        if (slot < 0 || schema.getField(slot).getType() != Field.FieldType.MANY2MANY)
             throw new OdooApiException("Field '" + fieldName + "' is not a many2many field");
         final Object currentValue = get(fieldName);
         if (currentValue == null) put(fieldName, values);
@@ -121,18 +359,79 @@ public class MapRow implements Serializable {
         this.put(fieldName, newValues.toArray(new Object[newValues.size()]));
     }
 
-    public void changesApplied() {
-        this.changedFields.clear();
+    /**
+     * Sets a one2many or many2many field to the commands that persist the
+     * child rows together with this row. New children are created, changed
+     * children are updated and the others are linked.
+     *
+     * @param fieldName Name of the relational field
+     * @param children Child rows
+     * @throws OdooApiException
+     */
+    public void putChildRows(final String fieldName, final Collection<MapRow> children) throws OdooApiException {
+        final int slot = schema.indexOf(fieldName);
+        if (slot < 0) throw new OdooApiException("Field '" + fieldName + "' was not found in row");
+        final Field.FieldType fieldType = schema.getField(slot).getType();
+        if (fieldType != Field.FieldType.ONE2MANY && fieldType != Field.FieldType.MANY2MANY)
+            throw new OdooApiException("Field '" + fieldName + "' is not a one2many or many2many field");
+        put(fieldName, X2ManyCommands.fromRows(children));
+    }
+
+    public synchronized void changesApplied() {
+        changesSent(changedSlots);
+        this.changedSlots.clear();
+    }
+
+    /**
+     * Returns the changed slots and clears them, atomically with put. A value
+     * that is put after this call is reported as changed again.
+     */
+    synchronized BitSet takeChanges() {
+        final BitSet taken = (BitSet) changedSlots.clone();
+        changedSlots.clear();
+        return taken;
+    }
+
+    /**
+     * Marks slots taken with takeChanges as changed again, after sending them
+     * failed
+     */
+    synchronized void restoreChanges(final BitSet slots) {
+        changedSlots.or(slots);
     }
 
-    public FieldCollection getChangedFields() {
-        return this.changedFields;
+    /**
+     * Tells child rows sent as commands in the given slots that they were
+     * persisted with this row
+     */
+    synchronized void changesSent(final BitSet slots) {
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            if (values[slot] instanceof X2ManyCommands) ((X2ManyCommands) values[slot]).changesApplied();
+        }
+    }
+
+    /**
+     * Returns the fields of a set of slots
+     */
+    FieldCollection getFields(final BitSet slots) {
+        final FieldCollection fields = new FieldCollection();
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            fields.add(schema.getField(slot));
+        }
+        return fields;
+    }
+
+    public synchronized FieldCollection getChangedFields() {
+        return getFields(changedSlots);
     }
 
     @Override
     public String toString() {
-        return new StringBuilder()
-                .append("MapRow(openERPResult=").append(openERPResult)
+        final StringBuilder result = new StringBuilder("MapRow(openERPResult={id=").append(id);
+        for (int i = 0; i < values.length; i++) {
+            result.append(", ").append(schema.getField(i).getName()).append('=').append(values[i]);
+        }
+        return result.append("}")
                 .append(", fields=").append(getFields())
                 .append(", rowChangedListeners=").append(rowChangedListeners)
                 .append(", changedFields=").append(getChangedFields()).append(")")
@@ -18,22 +18,32 @@
  */
 package com.odoojava.api;
 
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import org.apache.xmlrpc.XmlRpcException;
 import com.odoojava.api.Field.FieldType;
-import com.odoojava.api.helpers.FilterHelper;
-import java.util.Locale;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 
 /**
  * Main class for communicating with the server. It provides extra validation for making calls to the Odoo server. It
@@ -47,6 +57,8 @@ public class ObjectAdapter {
     private final String modelName;
     private final OdooCommand command;
     private final FieldCollection allFields;
+    // Fields by name, for filter validation
+    private final Map<String, Field> fieldsByName;
     private final Version serverVersion;
 
     // Object name cache so the adapter doesn't have to reread model names from
@@ -59,11 +71,26 @@ public class ObjectAdapter {
     // names from the database for every workflow call.
     private static final List<String> signalCache = new ArrayList<>();
 
-    // Cache used to store the name_get result of an model to cater for
-    // many2many relations in the import function
-    // It is cleared every time the import function is called for a specific
-    // object
-    private final Map<String, Map<String, String>> modelNameCache = new ConcurrentHashMap<>();
+    // IDs of many2one values that were imported as text
+    private final Many2oneResolver many2oneResolver = new Many2oneResolver();
+
+    // Maximum number of IDs in one write call when writing a RowCollection
+    private int writeChunkSize = 1000;
+
+    // Maximum number of rows in one create call when creating a RowCollection
+    private int createChunkSize = 1000;
+
+    // Settings of the importData pipeline
+    private int importChunkSize = 1000;
+    private int importParallelism = 1;
+    private int importRetries = 0;
+    private int importConversionParallelism = 1;
+    private boolean importBisect = false;
+
+    // Settings of the chunked batch operations
+    private int unlinkChunkSize = 1000;
+    private int actionChunkSize = 100;
+    private int batchParallelism = 1;
 
     /**
      * Default constructor
@@ -84,6 +111,10 @@ public class ObjectAdapter {
         validateModelExists();
 
         allFields = getFields();
+        fieldsByName = new HashMap<>(allFields.size() * 2);
+        for (Field field : allFields) {
+            fieldsByName.put(field.getName(), field);
+        }
     }
 
     /**
@@ -245,6 +276,22 @@ public class ObjectAdapter {
         }
     }
 
+    /**
+     * Reads objects from the Odoo server for a set of IDs
+     *
+     * @param ids Set of ids to fetch objects for
+     * @param fields List of fields to fetch data for
+     * @return A collection of rows for an Odoo object
+     * @throws OdooApiException
+     */
+    public RowCollection readObject(IdSet ids, String[] fields) throws OdooApiException {
+        try {
+            return new RowCollection(command.readObject(modelName, ids, fields), createFieldCollection(fields));
+        } catch (XmlRpcException ex) {
+            throw new XmlRpcRuntimeException(ex);
+        }
+    }
+
     /**
      * *
      * Fetches field information for the current Odoo object this adapter is linked to
@@ -302,123 +349,58 @@ public class ObjectAdapter {
             return new Object[0];
         }
 
-        ArrayList<Object> processedFilters = new ArrayList<>();
-
-        for (int i = 0; i < filters.getFilters().length; i++) {
-            Object filter = filters.getFilters()[i];
-
-            if (filter == null) throw new IllegalArgumentException("null filter parameter is not allowed");
-
-            // Is a logical operator
-            if (filter instanceof String) {
-                processedFilters.add(filter);
-                continue;
-            }
-
-            // Is a comparison filter
-            Object[] filterObjects = (Object[]) filter;
-            if (!(filter instanceof Object[]) || filterObjects.length != 3) {
-                throw new OdooApiException("Filters aren't in the correct format.  Please read the Odoo help.");
-            }
-
-            String fieldName = filterObjects[0].toString();
-            String comparison = filterObjects[1].toString();
-            Object value = filterObjects[2];
-
-            Field fld = findFieldByName(fieldName);
-
-            // Can't search on calculated fields
-            if (fld != null && fld.getFunc_method()) {
-                throw new OdooApiException("Can not search on function field " + fieldName);
-            }
-
-            // Fix the value type if required for the Odoo server
-            if (!"id".equals(fieldName) && fld == null) {
-                throw new OdooApiException("Unknow filter field " + fieldName);
-            } else if ("is null".equals(comparison)) {
-                comparison = "=";
-                value = false;
-            } else if ("is not null".equals(comparison)) {
-                comparison = "!=";
-                value = false;
-            } else if (fld != null && fld.getType() == FieldType.BOOLEAN && !(value instanceof Boolean)) {
-                value = convertToBoolean(value);
-            } else if (fld != null && fld.getType() == FieldType.FLOAT && !(value instanceof Double)) {
-                value = Double.parseDouble(value.toString());
-            } else if (fld != null && fld.getType() == FieldType.DATE && value instanceof Date) {
-                value = new SimpleDateFormat("yyyy-MM-dd").format((Date) value);
-            } else if (fld != null && fld.getType() == FieldType.DATETIME && value instanceof Date) {
-                value = new SimpleDateFormat("yyyy-MM-dd HH:mm").format((Date) value);
-            } else if ("=".equals(comparison)) {
-
-                // If a integer field is not an integer in a '=' comparison,
-                // parse it as an int
-                if (!(value instanceof Integer)) {
-                    if ("id".equals(fieldName)
-                            || (fld != null && fld.getType() == FieldType.INTEGER && !(value instanceof Integer))
-                            || (fld != null && fld.getType() == FieldType.MANY2ONE && !(value instanceof Integer))) {
-                        value = Integer.parseInt(value.toString());
-                    }
-                }
-            } else if ("in".equalsIgnoreCase(comparison)) {
-                if (value instanceof String) {
-                    // Split by , where the , isn't preceded by a \
-                    String[] entries = value.toString().split("(?<!\\\\),");
-                    Object[] valueArr = new Object[entries.length];
-                    for (int entrIdx = 0; entrIdx < entries.length; entrIdx++) {
-                        String entry = FilterHelper.csvDecodeString(entries[entrIdx]);
-
-                        // For relation fields or integer fields we build an
-                        // array of integers
-                        if (fld != null
-                                && (fld.getType() == FieldType.INTEGER || fld.getType() == FieldType.ONE2MANY
-                                || fld.getType() == FieldType.MANY2MANY || fld.getType() == FieldType.MANY2ONE)
-                                || "id".equals(fieldName)) {
-                            valueArr[entrIdx] = Integer.parseInt(entry);
-                        } else {
-                            valueArr[entrIdx] = entry;
-                        }
-                    }
-                    value = valueArr;
-                } // If it is a single value, just put it in an array
-                else if (!(value instanceof Object[])) {
-                    value = new Object[]{value};
-                }
-            }
-
-            processedFilters.add(new Object[]{fieldName, comparison, value});
+        return PreparedFilter.compile(modelName, filters.getFilters(), fieldsByName).bind();
+    }
 
+    /**
+     * Validates a filter once so it can be used for many searches. Values set to PreparedFilter.PARAMETER are given
+     * when searching. Prepared filters are cached per session, so preparing the same filter again is cheap.
+     *
+     * @param filters FilterCollection containing the specified filters, with PreparedFilter.PARAMETER for the values
+     * that change between searches
+     * @return The prepared filter
+     * @throws OdooApiException If the filter is not valid for this model
+     */
+    public PreparedFilter prepareFilter(final FilterCollection filters) throws OdooApiException {
+        final Object[] filterArray = filters == null ? new Object[0] : filters.getFilters();
+        final PreparedFilterCache cache = command.getPreparedFilterCache();
+        PreparedFilter prepared = cache.get(modelName, filterArray);
+        if (prepared == null) {
+            prepared = PreparedFilter.compile(modelName, filterArray, fieldsByName);
+            cache.put(modelName, filterArray, prepared);
         }
+        return prepared;
+    }
 
-        return processedFilters.toArray(new Object[processedFilters.size()]);
+    /**
+     * Simplifies a domain using the field types of this model. Equalities on fields that hold one value per record
+     * are intersected, so contradicting terms reduce the domain to Domain.FALSE.
+     *
+     * @param domain Domain to simplify
+     * @return An equivalent domain
+     */
+    public Domain simplify(final Domain domain) {
+        return domain.simplify(allFields);
     }
 
-    private Object convertToBoolean(Object value) throws OdooApiException {
-        if (value instanceof String) {
-            char firstchar = value.toString().toLowerCase(Locale.getDefault()).charAt(0);
-            switch (firstchar) {
-                case '1':
-                case 'y':
-                case 't':
-                    return true;
-                case '0':
-                case 'n':
-                case 'f':
-                    return false;
-                default:
-                    throw new OdooApiException("Unknown boolean " + value.toString());
-            }
+    /**
+     * Validates a simplified domain. Returns null for Domain.FALSE, the search can be skipped.
+     */
+    private Object[] validateDomain(final Domain simplified) throws OdooApiException {
+        if (simplified.isFalse()) {
+            return null;
         }
-        return value;
+        if (simplified.isTrue()) {
+            return new Object[0];
+        }
+        return PreparedFilter.compile(modelName, simplified.toFilters(), fieldsByName).bind();
     }
 
-    private Field findFieldByName(String fieldName) {
-        for (Field field : allFields) {
-            if (field.getName().equals(fieldName)) {
-                return field;
-            }
+    private Object[] bindFilter(final PreparedFilter filter, final Object[] parameters) throws OdooApiException {
+        if (!filter.getModelName().equals(modelName)) {
+            throw new OdooApiException("Filter was prepared for " + filter.getModelName() + " and not " + modelName);
         }
-        return null;
+        return filter.bind(parameters);
     }
 
     private String[] getFieldListForImport(FieldCollection currentFields) {
@@ -443,122 +425,419 @@ public class ObjectAdapter {
      * The load function will be called for V7 and the IDs will be set on the imported rows. The load function was
      * introduced in V7 and the import_data function deprecated.
      *
+     * Rows are sent in chunks, see importDataWithReport. Chunks that were loaded before a failing chunk stay committed.
+     *
      * @param rows Rows to import.
      * @return If the import was successful
-     * @throws OdooApiException
+     * @throws OdooApiException With the messages of all failed chunks
      */
     public boolean importData(final RowCollection rows) throws OdooApiException {
+        final ImportReport report = importDataWithReport(rows);
+        if (!report.isSuccessful()) {
+            throw new OdooApiException(report.getErrorMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Imports rows in chunks of getImportChunkSize() rows. Up to getImportParallelism() chunks are converted and sent
+     * to the server at the same time. Each chunk is committed by the server on its own. A failing chunk is retried
+     * getImportRetries() times when the call itself fails and, if isImportBisect() is set, split in halves until the
+     * failing rows are found.
+     *
+     * New rows (without an ID) and existing rows are sent in separate chunks.
+     *
+     * @param rows Rows to import.
+     * @return A report with the IDs of the imported rows and the messages of failed chunks
+     * @throws OdooApiException
+     */
+    public ImportReport importDataWithReport(final RowCollection rows) throws OdooApiException {
+        return importDataWithReport(rows, null);
+    }
+
+    /**
+     * Imports rows in chunks like importDataWithReport(RowCollection) and records every committed chunk in a checkpoint
+     * file. If the import is started again with the same checkpoint and the same rows, for example after the process
+     * died, the rows that were committed get their IDs from the checkpoint and are not sent again. The checkpoint file
+     * is deleted when all rows were imported.
+     *
+     * @param rows Rows to import, as loaded from their source
+     * @param checkpoint Checkpoint file of the import. Null to import without a checkpoint.
+     * @return A report with the IDs of the imported rows and the messages of failed chunks
+     * @throws OdooApiException If the checkpoint was created for different rows
+     */
+    public ImportReport importDataWithReport(final RowCollection rows, final ImportCheckpoint checkpoint)
+            throws OdooApiException {
+        if (checkpoint != null) {
+            checkpoint.open(ImportCheckpoint.hash(this.modelName, rows));
+        }
         try {
-            if (this.serverVersion.getMajor() >= 7) {
-                final RowCollection newRows = new RowCollection();
-                final RowCollection oldRows = new RowCollection();
-                for (int i = 0; i < rows.size(); ++i) {
-                    if (rows.get(i).getID() == 0) {
-                        newRows.add(rows.get(i));
-                    } else {
-                        oldRows.add(rows.get(i));
+            final ImportReport report = importChunks(rows, checkpoint);
+            if (checkpoint != null && report.isSuccessful()) {
+                checkpoint.delete();
+            }
+            return report;
+        } catch (IOException ex) {
+            throw new OdooApiException("Could not delete import checkpoint " + checkpoint.getFile(), ex);
+        } finally {
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+        }
+    }
+
+    private ImportReport importChunks(final RowCollection rows, final ImportCheckpoint checkpoint)
+            throws OdooApiException {
+        final ImportReport report = new ImportReport(rows.size(), checkpoint);
+        invalidateNameCache();
+
+        final List<int[]> partitions = new ArrayList<>(2);
+        if (this.serverVersion.getMajor() >= 7) {
+            // load can't mix rows with and without IDs in one call
+            partitions.add(IntStream.range(0, rows.size()).filter(i -> rows.get(i).getID() != 0).toArray());
+            partitions.add(IntStream.range(0, rows.size()).filter(i -> rows.get(i).getID() == 0).toArray());
+        } else {
+            partitions.add(IntStream.range(0, rows.size()).toArray());
+        }
+
+        if (checkpoint != null) {
+            // Rows committed by a previous run only get their IDs back
+            for (int p = 0; p < partitions.size(); p++) {
+                final int[] partition = partitions.get(p);
+                int remaining = 0;
+                for (int rowIndex : partition) {
+                    if (!checkpoint.isCommitted(rowIndex)) {
+                        partition[remaining++] = rowIndex;
+                        continue;
+                    }
+                    final int id = checkpoint.getCommittedId(rowIndex);
+                    if (id > 0) {
+                        rows.get(rowIndex).put("id", id);
+                    }
+                    report.recordResumed(rowIndex, id);
+                }
+                partitions.set(p, Arrays.copyOf(partition, remaining));
+            }
+        }
+
+        // Shared by all chunks, so conversion threads are limited for the whole import
+        final ForkJoinPool conversionPool = importConversionParallelism > 1
+                ? new ForkJoinPool(importConversionParallelism) : null;
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (int[] partition : partitions) {
+            for (int[] range : BatchSupport.ranges(partition.length, importChunkSize)) {
+                final int[] rowIndexes = Arrays.copyOfRange(partition, range[0], range[1]);
+                tasks.add(() -> {
+                    // A chunk that fails before it is loaded must not stop the other chunks
+                    try {
+                        importChunk(rows, rowIndexes, report, conversionPool);
+                    } catch (OdooApiException | RuntimeException ex) {
+                        report.recordFailure(rowIndexes, ex.getMessage());
+                    }
+                    return null;
+                });
+            }
+        }
+        try {
+            BatchSupport.runAll(tasks, importParallelism);
+        } finally {
+            if (conversionPool != null) {
+                conversionPool.shutdown();
+            }
+        }
+        return report;
+    }
+
+    private void importChunk(final RowCollection rows, final int[] rowIndexes, final ImportReport report,
+            final ForkJoinPool conversionPool) throws OdooApiException {
+        prefetchRelationNames(rows, rowIndexes);
+        final Map<String, Map<String, Integer>> many2OneIds = resolveMany2OneTexts(rows, rowIndexes, report);
+
+        // load takes new rows without the .id column, import_data always needs it
+        final boolean includeId = this.serverVersion.getMajor() < 7 || rows.get(rowIndexes[0]).getID() != 0;
+        if (this.command.isStreamingRequests()) {
+            // Rows are converted while the request is written, so a chunk is never held in memory as a whole
+            loadChunk(rows, rowIndexes, new AbstractList<Object[]>() {
+                @Override
+                public Object[] get(int index) {
+                    try {
+                        return fixImportData(rows.get(rowIndexes[index]), includeId, many2OneIds);
+                    } catch (XmlRpcRuntimeException ex) {
+                        throw ex;
+                    } catch (OdooApiException | RuntimeException ex) {
+                        throw new IllegalArgumentException("Row " + rowIndexes[index] + ": " + conversionError(ex),
+                                ex);
                     }
                 }
-                if (!newRows.isEmpty() && !oldRows.isEmpty()) {
-                    return this.importData(oldRows) && this.importData(newRows);
+
+                @Override
+                public int size() {
+                    return rowIndexes.length;
                 }
+            }, report);
+            return;
+        }
+
+        // Each row is converted into its own slot, so the order doesn't depend on the threads
+        final Object[][] convertedRows = new Object[rowIndexes.length][];
+        final String[] errors = new String[rowIndexes.length];
+        final IntConsumer convert = i -> {
+            try {
+                convertedRows[i] = this.fixImportData(rows.get(rowIndexes[i]), includeId, many2OneIds);
+            } catch (XmlRpcRuntimeException ex) {
+                // A failing server call is not a problem of the row
+                throw ex;
+            } catch (OdooApiException | RuntimeException ex) {
+                // Bad values also surface as NumberFormatException, ClassCastException and the like
+                errors[i] = conversionError(ex);
             }
-            this.modelNameCache.clear();
-            final Object[][] importRows = new Object[rows.size()][];
-            for (int j = 0; j < rows.size(); ++j) {
-                final MapRow mapRow = rows.get(j);
-                importRows[j] = this.fixImportData(mapRow);
+        };
+        if (conversionPool == null || rowIndexes.length == 1) {
+            IntStream.range(0, rowIndexes.length).forEach(convert);
+        } else {
+            try {
+                conversionPool.submit(() -> IntStream.range(0, rowIndexes.length).parallel().forEach(convert)).get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new OdooApiException("Interrupted while converting rows for import", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new OdooApiException(ex.getCause());
             }
-            if (this.serverVersion.getMajor() >= 7) {
-                this.importDataV7(rows, importRows);
+        }
+
+        // Rows that can't be converted fail on their own, in row order, the rest of the chunk is still sent
+        final List<Integer> converted = new ArrayList<>(rowIndexes.length);
+        final List<Object[]> importRows = new ArrayList<>(rowIndexes.length);
+        for (int i = 0; i < rowIndexes.length; i++) {
+            if (errors[i] != null) {
+                report.recordRowFailure(rowIndexes[i], errors[i]);
             } else {
-                this.importDataLegacy(rows, importRows);
+                importRows.add(convertedRows[i]);
+                converted.add(rowIndexes[i]);
             }
-            return true;
-        } catch (XmlRpcException ex) {
-            throw new XmlRpcRuntimeException((Throwable) ex);
         }
+        if (!converted.isEmpty()) {
+            loadChunk(rows, converted.stream().mapToInt(Integer::intValue).toArray(), importRows, report);
+        }
+    }
+
+    // Other exceptions keep their type in the message, "For input string: x" alone doesn't tell much
+    private static String conversionError(final Exception ex) {
+        return ex instanceof OdooApiException && ex.getMessage() != null ? ex.getMessage() : ex.toString();
+    }
+
+    private void loadChunk(final RowCollection rows, final int[] rowIndexes, final List<Object[]> importRows,
+            final ImportReport report) throws OdooApiException {
+        final RowCollection chunkRows = new RowCollection();
+        for (int rowIndex : rowIndexes) {
+            chunkRows.add(rows.get(rowIndex));
+        }
+
+        // The server may have committed a call that failed on the way back. Sending rows without an ID again would
+        // create them twice, rows with an ID are only updated again.
+        final boolean resendable = chunkRows.stream().allMatch(mapRow -> mapRow.getID() != 0);
+        String error = null;
+        for (int attempt = 0; attempt <= importRetries; attempt++) {
+            try {
+                if (this.serverVersion.getMajor() >= 7) {
+                    this.importDataV7(chunkRows, importRows);
+                } else {
+                    this.importDataLegacy(chunkRows, importRows);
+                }
+                report.recordSuccess(rowIndexes, chunkRows.stream().mapToInt(MapRow::getID).toArray());
+                return;
+            } catch (OdooApiException | IllegalArgumentException ex) {
+                // The server rejected the data or a streamed row could not be converted, sending it again won't help
+                error = ex.getMessage();
+                break;
+            } catch (XmlRpcException | XmlRpcRuntimeException ex) {
+                if (!resendable) {
+                    report.recordFailure(rowIndexes, "Outcome unknown, the rows may have been created: "
+                            + ex.getMessage());
+                    return;
+                }
+                error = ex.getMessage();
+            }
+        }
+
+        if (importBisect && rowIndexes.length > 1) {
+            final int half = rowIndexes.length / 2;
+            loadChunk(rows, Arrays.copyOfRange(rowIndexes, 0, half), importRows.subList(0, half), report);
+            loadChunk(rows, Arrays.copyOfRange(rowIndexes, half, rowIndexes.length),
+                    importRows.subList(half, importRows.size()), report);
+        } else {
+            report.recordFailure(rowIndexes, error);
+        }
+    }
+
+    /**
+     * Returns the number of rows sent in a single load call by importData
+     *
+     * @return
+     */
+    public int getImportChunkSize() {
+        return importChunkSize;
+    }
+
+    /**
+     * Sets the number of rows sent in a single load call by importData
+     *
+     * @param importChunkSize Number of rows per call. Must be greater than zero.
+     */
+    public void setImportChunkSize(int importChunkSize) {
+        if (importChunkSize <= 0) {
+            throw new IllegalArgumentException("Import chunk size must be greater than zero");
+        }
+        this.importChunkSize = importChunkSize;
+    }
+
+    /**
+     * Returns the maximum number of chunks importData sends to the server at the same time
+     *
+     * @return
+     */
+    public int getImportParallelism() {
+        return importParallelism;
+    }
+
+    /**
+     * Sets the maximum number of chunks importData sends to the server at the same time
+     *
+     * @param importParallelism Number of concurrent calls. 1 sends chunks one after the other.
+     */
+    public void setImportParallelism(int importParallelism) {
+        if (importParallelism <= 0) {
+            throw new IllegalArgumentException("Import parallelism must be greater than zero");
+        }
+        this.importParallelism = importParallelism;
+    }
+
+    /**
+     * Returns the number of times a chunk is sent again when the call to the server fails
+     *
+     * @return
+     */
+    public int getImportRetries() {
+        return importRetries;
+    }
+
+    /**
+     * Sets the number of times a chunk is sent again when the call to the server fails. Chunks that the server rejects
+     * are not retried. Chunks with new rows are never sent again after a failed call, because the server may have
+     * created them already. They are reported as failed with an unknown outcome.
+     *
+     * @param importRetries Number of retries
+     */
+    public void setImportRetries(int importRetries) {
+        if (importRetries < 0) {
+            throw new IllegalArgumentException("Import retries can not be negative");
+        }
+        this.importRetries = importRetries;
+    }
+
+    /**
+     * Returns the number of threads that convert rows for importData
+     *
+     * @return
+     */
+    public int getImportConversionParallelism() {
+        return importConversionParallelism;
+    }
+
+    /**
+     * Sets the number of threads that convert rows for importData. The threads are shared by all chunks of an import.
+     * Conversion happens while the request is written when the session streams requests, this setting is not used
+     * then.
+     *
+     * @param importConversionParallelism Number of threads. 1 converts rows on the thread that sends the chunk.
+     */
+    public void setImportConversionParallelism(int importConversionParallelism) {
+        if (importConversionParallelism <= 0) {
+            throw new IllegalArgumentException("Import conversion parallelism must be greater than zero");
+        }
+        this.importConversionParallelism = importConversionParallelism;
+    }
+
+    /**
+     * Returns if failed chunks are split in halves to find the failing rows
+     *
+     * @return
+     */
+    public boolean isImportBisect() {
+        return importBisect;
+    }
+
+    /**
+     * Sets if failed chunks are split in halves and sent again to find the failing rows. The rows of the other halves
+     * are imported.
+     *
+     * @param importBisect
+     */
+    public void setImportBisect(boolean importBisect) {
+        this.importBisect = importBisect;
     }
 
-    private Object[] fixImportData(final MapRow inputMapRow) throws OdooApiException {
+    private Object[] fixImportData(final MapRow inputMapRow, final boolean includeId,
+            final Map<String, Map<String, Integer>> many2OneIds) throws OdooApiException {
         try {
-            final Object[] outputRow = new Object[inputMapRow.getFields().size() + 1];
-            outputRow[0] = inputMapRow.get("id");
-            if (outputRow[0] == null) {
-                outputRow[0] = 0;
-            } else {
-                outputRow[0] = Integer.parseInt(inputMapRow.get("id").toString());
+            final ValueCodec codec = getValueCodec();
+            // New rows are loaded without the .id column
+            final int offset = includeId ? 1 : 0;
+            final Object[] outputRow = new Object[inputMapRow.getFields().size() + offset];
+            if (includeId) {
+                outputRow[0] = inputMapRow.getID();
             }
             for (int i = 0; i < inputMapRow.getFields().size(); ++i) {
-                final int columnIndex = i + 1;
+                final int columnIndex = i + offset;
                 final Field fld = inputMapRow.getFields().get(i);
                 final String fieldName = fld.getName();
                 Object value = inputMapRow.get(fieldName);
                 outputRow[columnIndex] = value;
                 if (fld.getType() == Field.FieldType.MANY2ONE) {
-                    if (value == null) {
-                        outputRow[columnIndex] = 0;
-                    } else {
-                        outputRow[columnIndex] = Integer.parseInt(value.toString());
-                    }
+                    outputRow[columnIndex] = getMany2OneId(fld, value, many2OneIds);
                 } else if (value == null) {
                     outputRow[columnIndex] = false;
+                } else if (value instanceof X2ManyCommands) {
+                    throw new OdooApiException("Field " + fieldName
+                            + " holds x2many commands, which can only be sent with createObject or writeObject");
                 } else {
-                    value = this.formatValueForWrite(fld, value);
+                    value = codec.encode(fld, value);
                     switch (fld.getType()) {
                         case SELECTION: {
-                            boolean validValue = false;
-                            for (final SelectionOption option : fld.getSelectionOptions()) {
-                                if (option.code.equals(value.toString())) {
-                                    validValue = true;
-                                    outputRow[columnIndex] = option.value;
-                                    break;
-                                }
-                                if (option.value.equals(value.toString())) {
-                                    outputRow[columnIndex] = value;
-                                    validValue = true;
-                                    break;
-                                }
-                            }
-                            if (!validValue) {
+                            // The import procedure uses the label and not the code
+                            final String selectionValue = value.toString();
+                            final String label = fld.getSelectionLabel(selectionValue);
+                            if (label != null) {
+                                outputRow[columnIndex] = label;
+                            } else if (fld.getSelectionCode(selectionValue) != null) {
+                                outputRow[columnIndex] = value;
+                            } else {
                                 throw new OdooApiException("Could not find a valid value for section field " + fieldName + " with value " + value);
                             }
                             break;
                         }
                         case MANY2MANY: {
-                            Map<String, String> idToName;
-                            if (!this.modelNameCache.containsKey(fld.getRelation())) {
-                                idToName = new HashMap<String, String>();
-                                final Response response = this.command.searchObject(fld.getRelation(), new Object[0]);
-                                if (response.isSuccessful()) {
-                                    final Object[] ids = response.getResponseObjectAsArray();
-                                    final Object[] names = this.command.nameGet(fld.getRelation(), ids);
-                                    for (int j = 0; j < ids.length; ++j) {
-                                        final Object[] nameValue = (Object[]) names[j];
-                                        idToName.put(nameValue[0].toString(), nameValue[1].toString());
-                                    }
+                            final int[] ids = getMany2ManyIds(inputMapRow.get(fieldName));
+                            final Map<Integer, String> idToName = resolveNames(fld.getRelation(), IdSet.of(ids));
+                            final String[] names = new String[ids.length];
+                            for (int j = 0; j < ids.length; ++j) {
+                                names[j] = idToName.get(ids[j]);
+                                if (names[j] == null) {
+                                    throw new OdooApiException("Could not find " + fld.getRelation() + " with ID " + ids[j]);
                                 }
-                                this.modelNameCache.put(fld.getRelation(), idToName);
-                            } else {
-                                idToName = this.modelNameCache.get(fld.getRelation());
                             }
-                            String newValue = "";
-                            if (value instanceof String) {
-                                for (final String singleID : value.toString().split(",")) {
-                                    if (!idToName.containsKey(singleID)) {
-                                        throw new OdooApiException("Could not find " + fld.getRelation() + " with ID " + singleID);
-                                    }
-                                    newValue = newValue + "," + idToName.get(singleID);
-                                }
-                            } else {
-                                for (final Object singleID2 : (Object[]) value) {
-                                    if (!idToName.containsKey(singleID2.toString())) {
-                                        throw new OdooApiException("Could not find " + fld.getRelation() + " with ID " + singleID2.toString());
-                                    }
-                                    newValue = newValue + "," + idToName.get(singleID2.toString());
-                                }
+                            outputRow[columnIndex] = String.join(",", names);
+                            break;
+                        }
+                        case BINARY: {
+                            if (value instanceof InputStream || value instanceof Path) {
+                                throw new OdooApiException("Field " + fieldName
+                                        + " holds a stream, which can only be sent with createObject or writeObject");
                             }
-                            outputRow[columnIndex] = newValue.substring(1);
+                            outputRow[columnIndex] = value.toString();
                             break;
                         }
                         default: {
@@ -574,83 +853,353 @@ public class ObjectAdapter {
         }
     }
 
-    private void importDataLegacy(RowCollection rows, Object[][] importRows) throws XmlRpcException, OdooApiException {
-
-        String[] targetFieldList = getFieldListForImport(rows.get(0).getFields());
-
-        Object[] result = command.importData(modelName, targetFieldList, importRows);
-
-        // Should return the number of rows committed. If there was an
-        // error, it returns -1
-        if ((Integer) result[0] != importRows.length) {
-            throw new OdooApiException(result[2].toString() + "\nRow :" + result[1].toString() + "");
+    /**
+     * Resolves the names of all many2many IDs in a chunk with one name_get call per relation, so that fixImportData
+     * finds them in the cache
+     */
+    private void prefetchRelationNames(final RowCollection rows, final int[] rowIndexes) {
+        final Map<String, List<int[]>> idsByRelation = new HashMap<>();
+        for (int rowIndex : rowIndexes) {
+            final MapRow mapRow = rows.get(rowIndex);
+            for (Field fld : mapRow.getFields()) {
+                if (fld.getType() == FieldType.MANY2MANY) {
+                    final Object value = mapRow.get(fld.getName());
+                    // Commands are rejected by fixImportData
+                    if (value != null && !(value instanceof X2ManyCommands)) {
+                        try {
+                            idsByRelation.computeIfAbsent(fld.getRelation(), key -> new ArrayList<>())
+                                    .add(getMany2ManyIds(value));
+                        } catch (NumberFormatException ex) {
+                            // Reported for the row by fixImportData
+                        }
+                    }
+                }
+            }
+        }
+        try {
+            for (Entry<String, List<int[]>> relation : idsByRelation.entrySet()) {
+                resolveNames(relation.getKey(),
+                        IdSet.of(relation.getValue().stream().flatMapToInt(Arrays::stream).toArray()));
+            }
+        } catch (XmlRpcException ex) {
+            throw new XmlRpcRuntimeException(ex);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void importDataV7(final RowCollection rows, Object[][] importRows) throws XmlRpcException, OdooApiException {
-        String[] targetFieldList = this.getFieldListForImport(rows.get(0).getFields());
-        if (this.serverVersion.getMajor() >= 7 && !rows.isEmpty() && rows.get(0).getID() == 0) {
-            final String[] newTargetFieldList = new String[targetFieldList.length - 1];
-            for (int i = 1; i < targetFieldList.length; ++i) {
-                newTargetFieldList[i - 1] = targetFieldList[i];
+    /**
+     * Returns the names of related records, calling name_get only for the IDs that are not cached yet
+     */
+    private Map<Integer, String> resolveNames(final String relation, final IdSet ids) throws XmlRpcException {
+        final RelationNameCache cache = this.command.getRelationNameCache();
+        final Map<Integer, String> idToName = new HashMap<>();
+        final List<Object> missing = new ArrayList<>();
+        ids.forEach(id -> {
+            final String name = cache.get(relation, id);
+            if (name == null) {
+                missing.add(id);
+            } else {
+                idToName.put(id, name);
             }
-            targetFieldList = newTargetFieldList;
-            final Object[][] newImportRows = new Object[rows.size()][];
-            for (int j = 0; j < importRows.length; ++j) {
-                final Object[] newRow = new Object[importRows[j].length - 1];
-                for (int k = 1; k < importRows[j].length; ++k) {
-                    newRow[k - 1] = importRows[j][k];
-                }
-                newImportRows[j] = newRow;
+        });
+        if (!missing.isEmpty()) {
+            for (Object nameGetResult : this.command.nameGet(relation, missing.toArray())) {
+                final Object[] nameValue = (Object[]) nameGetResult;
+                final int id = IdSet.toInt(nameValue[0]);
+                cache.put(relation, id, nameValue[1].toString());
+                idToName.put(id, nameValue[1].toString());
             }
-            importRows = newImportRows;
-        }
-        final Map<String, Object> results = this.command.load(this.modelName, targetFieldList, importRows);
-        if (results.get("ids") instanceof Boolean) {
-            final Map<String, Object>[] messages = (Map<String, Object>[]) results.get("messages");
-            final String errorString = Arrays.stream(messages)
-                    .flatMap(m -> m.entrySet().stream()).map(e -> String.join(":", e.getKey(), e.getValue().toString()))
-                    .collect(Collectors.joining("\n"));
-            throw new OdooApiException(errorString);
         }
-        final Object[] ids = (Object[]) results.get("ids");
-        for (int j = 0; j < rows.size(); ++j) {
-            final MapRow mapRow = rows.get(j);
-            mapRow.put("id", ids[j]);
+        return idToName;
+    }
+
+    // Many2many values are either a comma separated string of IDs or an array of IDs
+    private static int[] getMany2ManyIds(final Object value) {
+        if (value instanceof Object[]) {
+            return Arrays.stream((Object[]) value).mapToInt(IdSet::toInt).toArray();
         }
+        return Arrays.stream(value.toString().split(","))
+                .map(String::trim).filter(id -> !id.isEmpty()).mapToInt(Integer::parseInt).toArray();
     }
 
     /**
-     * Gets the number of records that satisfies the filter
+     * Resolves the many2one values of a chunk that are given as text with as few calls as possible per relation.
+     * Texts that can't be resolved are added to the report.
      *
-     * @param filter A filter collection that contains a list of filters to be applied
-     * @return The number of record count.
-     * @throws OdooApiException
+     * @return The IDs per relation and text, that fixImportData converts the chunk with. They don't depend on the
+     * cache, which other chunks may evict entries from in the meantime.
      */
-    public int getObjectCount(FilterCollection filter) throws OdooApiException {
+    private Map<String, Map<String, Integer>> resolveMany2OneTexts(final RowCollection rows, final int[] rowIndexes,
+            final ImportReport report) {
+        final Map<String, Set<String>> textsByRelation = new HashMap<>();
+        for (int rowIndex : rowIndexes) {
+            final MapRow mapRow = rows.get(rowIndex);
+            for (Field fld : mapRow.getFields()) {
+                if (fld.getType() == FieldType.MANY2ONE) {
+                    final String text = getMany2OneText(mapRow.get(fld.getName()));
+                    if (text != null) {
+                        textsByRelation.computeIfAbsent(fld.getRelation(), key -> new LinkedHashSet<>()).add(text);
+                    }
+                }
+            }
+        }
+        final Map<String, Map<String, Integer>> idsByRelation = new HashMap<>();
         try {
-            Integer count = 0;
-            Object[] preparedFilters = validateFilters(filter);
-
-            Response response = command.searchObject(modelName, preparedFilters, -1, -1, null, true);
-            if (response.isSuccessful()) {
-                count = Integer.parseInt(response.getResponseObject().toString());
+            for (Entry<String, Set<String>> relation : textsByRelation.entrySet()) {
+                final Map<String, Integer> ids = many2oneResolver.resolve(this.command, relation.getKey(),
+                        relation.getValue());
+                idsByRelation.put(relation.getKey(), ids);
+                final Set<String> unresolved = new LinkedHashSet<>(relation.getValue());
+                unresolved.removeAll(ids.keySet());
+                if (!unresolved.isEmpty()) {
+                    report.recordUnresolved(relation.getKey(), unresolved);
+                }
             }
-            return count;
         } catch (XmlRpcException ex) {
             throw new XmlRpcRuntimeException(ex);
         }
+        return idsByRelation;
+    }
+
+    private Object getMany2OneId(final Field fld, final Object value,
+            final Map<String, Map<String, Integer>> many2OneIds) throws OdooApiException {
+        if (value == null || Boolean.FALSE.equals(value)) {
+            return 0;
+        }
+        if (value instanceof Object[]) {
+            // [id, name] as returned by read
+            return IdSet.toInt(((Object[]) value)[0]);
+        }
+        final String text = getMany2OneText(value);
+        if (text == null) {
+            return IdSet.toInt(value);
+        }
+        final Map<String, Integer> relationIds = many2OneIds.get(fld.getRelation());
+        final Integer id = relationIds == null ? null : relationIds.get(text);
+        if (id == null) {
+            throw new OdooApiException("Could not find " + fld.getRelation() + " with "
+                    + String.join(" or ", many2oneResolver.getLookupFields(fld.getRelation())) + " '" + text
+                    + "' for field " + fld.getName());
+        }
+        return id;
+    }
+
+    // Returns the value if it is a text reference instead of an ID
+    private static String getMany2OneText(final Object value) {
+        if (!(value instanceof String)) {
+            return null;
+        }
+        final String text = ((String) value).trim();
+        if (text.isEmpty() || text.chars().allMatch(Character::isDigit)) {
+            return null;
+        }
+        return text;
     }
 
     /**
-     * *
-     * Combines the searchObject and readObject calls. Allows for easy read of all data
+     * Sets the field that is used to find related records when importData gets a many2one value as text instead of an
+     * ID, for example default_code for product.product. The default lookup field is name.
      *
-     * @param filter A filter collection that contains a list of filters to be applied
-     * @param fields List of fields to return data for
-     * @return A collection of rows for an Odoo object
-     * @throws OdooApiException
+     * @param relation Related model
+     * @param lookupField Field of the related model to search the text on
+     */
+    public void setMany2OneLookupField(String relation, String lookupField) {
+        setMany2OneLookupFields(relation, lookupField);
+    }
+
+    /**
+     * Sets the fields that are used to find related records when importData gets a many2one value as text instead of
+     * an ID. Texts that are not found on the first field are searched on the next one, for example name and then
+     * display_name. Every field costs one search_read call per chunk of texts, not one call per text.
+     *
+     * @param relation Related model
+     * @param lookupFields Fields of the related model to search the text on, in order
+     */
+    public void setMany2OneLookupFields(String relation, String... lookupFields) {
+        if (lookupFields.length == 0) {
+            throw new IllegalArgumentException("At least one lookup field is required");
+        }
+        many2oneResolver.setLookupFields(relation, Arrays.asList(lookupFields));
+    }
+
+    public String getMany2OneLookupField(String relation) {
+        return many2oneResolver.getLookupFields(relation).get(0);
+    }
+
+    public List<String> getMany2OneLookupFields(String relation) {
+        return many2oneResolver.getLookupFields(relation);
+    }
+
+    /**
+     * Forgets the IDs that were found for many2one texts
+     */
+    public void clearMany2OneCache() {
+        many2oneResolver.clear();
+    }
+
+    /**
+     * Drops the cached names of this model. Called whenever the adapter changes records, so that imports into other
+     * models that refer to this model see the new names.
+     */
+    private void invalidateNameCache() {
+        this.command.getRelationNameCache().invalidate(this.modelName);
+    }
+
+    private void importDataLegacy(RowCollection rows, List<Object[]> importRows) throws XmlRpcException, OdooApiException {
+
+        String[] targetFieldList = getFieldListForImport(rows.get(0).getFields());
+
+        Object[] result = command.importData(modelName, targetFieldList, importRows.toArray(new Object[importRows.size()][]));
+
+        // Should return the number of rows committed. If there was an
+        // error, it returns -1
+        if ((Integer) result[0] != importRows.size()) {
+            throw new OdooApiException(result[2].toString() + "\nRow :" + result[1].toString() + "");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void importDataV7(final RowCollection rows, final List<Object[]> importRows) throws XmlRpcException, OdooApiException {
+        String[] targetFieldList = this.getFieldListForImport(rows.get(0).getFields());
+        if (rows.get(0).getID() == 0) {
+            // The rows were converted without the .id column
+            targetFieldList = Arrays.copyOfRange(targetFieldList, 1, targetFieldList.length);
+        }
+        final Map<String, Object> results = this.command.load(this.modelName, targetFieldList, importRows);
+        if (results.get("ids") instanceof Boolean) {
+            final Object[] messages = (Object[]) results.get("messages");
+            final String errorString = Arrays.stream(messages)
+                    .flatMap(m -> ((Map<String, Object>) m).entrySet().stream())
+                    .map(e -> String.join(":", e.getKey(), String.valueOf(e.getValue())))
+                    .collect(Collectors.joining("\n"));
+            throw new OdooApiException(errorString);
+        }
+        final Object[] ids = (Object[]) results.get("ids");
+        for (int j = 0; j < rows.size(); ++j) {
+            final MapRow mapRow = rows.get(j);
+            mapRow.put("id", ids[j]);
+        }
+    }
+
+    /**
+     * Gets the number of records that satisfies the filter
+     *
+     * @param filter A filter collection that contains a list of filters to be applied
+     * @return The number of record count.
+     * @throws OdooApiException
+     */
+    public int getObjectCount(FilterCollection filter) throws OdooApiException {
+        return getObjectCount(validateFilters(filter));
+    }
+
+    /**
+     * Gets the number of records that satisfies a prepared filter
+     *
+     * @param filter A filter prepared with prepareFilter
+     * @param parameters A value for every parameter of the filter
+     * @return The number of record count.
+     * @throws OdooApiException
+     */
+    public int getObjectCount(PreparedFilter filter, Object... parameters) throws OdooApiException {
+        return getObjectCount(bindFilter(filter, parameters));
+    }
+
+    /**
+     * Gets the number of records that match a domain. The domain is simplified first and the server isn't called if
+     * it can't match any record.
+     *
+     * @param domain Domain to match
+     * @return The number of record count.
+     * @throws OdooApiException
+     */
+    public int getObjectCount(Domain domain) throws OdooApiException {
+        final Object[] preparedFilters = validateDomain(simplify(domain));
+        return preparedFilters == null ? 0 : getObjectCount(preparedFilters);
+    }
+
+    private int getObjectCount(final Object[] preparedFilters) {
+        try {
+            Integer count = 0;
+
+            Response response = command.searchObject(modelName, preparedFilters, -1, -1, null, true);
+            if (response.isSuccessful()) {
+                count = Integer.parseInt(response.getResponseObject().toString());
+            }
+            return count;
+        } catch (XmlRpcException ex) {
+            throw new XmlRpcRuntimeException(ex);
+        }
+    }
+
+    /**
+     * Gets the IDs of the records that satisfies the filter
+     *
+     * @param filter A filter collection that contains a list of filters to be applied
+     * @return The set of matching IDs
+     * @throws OdooApiException
+     */
+    public IdSet searchIds(FilterCollection filter) throws OdooApiException {
+        return searchIds(filter, -1, -1, null);
+    }
+
+    /**
+     * Gets the IDs of the records that satisfies the filter. The order is used to select the records with offset and
+     * limit, the returned set is always in ascending ID order.
+     *
+     * @param filter A filter collection that contains a list of filters to be applied
+     * @param offset Number of records to skip. -1 for no offset.
+     * @param limit Maximum number of IDs to return. -1 for no limit.
+     * @param order Field name to order on
+     * @return The set of matching IDs
+     * @throws OdooApiException
+     */
+    public IdSet searchIds(FilterCollection filter, int offset, int limit, String order) throws OdooApiException {
+        return searchIds(validateFilters(filter), offset, limit, order);
+    }
+
+    /**
+     * Gets the IDs of the records that satisfies a prepared filter
+     *
+     * @param filter A filter prepared with prepareFilter
+     * @param parameters A value for every parameter of the filter
+     * @return The set of matching IDs
+     * @throws OdooApiException
+     */
+    public IdSet searchIds(PreparedFilter filter, Object... parameters) throws OdooApiException {
+        return searchIds(bindFilter(filter, parameters), -1, -1, null);
+    }
+
+    /**
+     * Gets the IDs of the records that match a domain. The domain is simplified first and the server isn't called if
+     * it can't match any record.
+     *
+     * @param domain Domain to match
+     * @param offset Number of records to skip. -1 for no offset.
+     * @param limit Maximum number of IDs to return. -1 for no limit.
+     * @param order Field name to order on
+     * @return The set of matching IDs
+     * @throws OdooApiException
+     */
+    public IdSet searchIds(Domain domain, int offset, int limit, String order) throws OdooApiException {
+        final Object[] preparedFilters = validateDomain(simplify(domain));
+        return preparedFilters == null ? IdSet.empty() : searchIds(preparedFilters, offset, limit, order);
+    }
+
+    private IdSet searchIds(final Object[] preparedFilters, int offset, int limit, String order) {
+        try {
+            return command.searchObjectIds(modelName, preparedFilters, offset, limit, order);
+        } catch (XmlRpcException ex) {
+            throw new XmlRpcRuntimeException(ex);
+        }
+    }
+
+    /**
+     * *
+     * Combines the searchObject and readObject calls. Allows for easy read of all data
+     *
+     * @param filter A filter collection that contains a list of filters to be applied
+     * @param fields List of fields to return data for
+     * @return A collection of rows for an Odoo object
+     * @throws OdooApiException
      */
     public RowCollection searchAndReadObject(FilterCollection filter, String[] fields) throws OdooApiException {
         return searchAndReadObject(filter, fields, -1, -1, "");
@@ -670,115 +1219,265 @@ public class ObjectAdapter {
      */
     public RowCollection searchAndReadObject(final FilterCollection filter, final String[] fields, int offset,
             int limit, String order) throws OdooApiException {
+        String[] fieldArray = fields == null ? new String[]{} : fields;
+        return new RowCollection(searchAndReadResults(validateFilters(filter), fieldArray, offset, limit, order),
+                createFieldCollection(fieldArray));
+    }
+
+    /**
+     * Combines the searchObject and readObject calls for a prepared filter
+     *
+     * @param filter A filter prepared with prepareFilter
+     * @param fields List of fields to return data for
+     * @param parameters A value for every parameter of the filter
+     * @return A collection of rows for an Odoo object
+     * @throws OdooApiException
+     */
+    public RowCollection searchAndReadObject(final PreparedFilter filter, final String[] fields,
+            Object... parameters) throws OdooApiException {
+        String[] fieldArray = fields == null ? new String[]{} : fields;
+        return new RowCollection(searchAndReadResults(bindFilter(filter, parameters), fieldArray, -1, -1, ""),
+                createFieldCollection(fieldArray));
+    }
+
+    /**
+     * Combines the searchObject and readObject calls for a domain. The domain is simplified first and the server isn't
+     * called if it can't match any record.
+     *
+     * @param domain Domain to match
+     * @param fields List of fields to return data for
+     * @param offset Number of records to skip. -1 for no offset.
+     * @param limit Maximum number of rows to return. -1 for no limit.
+     * @param order Field name to order on
+     * @return A collection of rows for an Odoo object
+     * @throws OdooApiException
+     */
+    public RowCollection searchAndReadObject(final Domain domain, final String[] fields, int offset, int limit,
+            String order) throws OdooApiException {
+        String[] fieldArray = fields == null ? new String[]{} : fields;
+        final Object[] preparedFilters = validateDomain(simplify(domain));
+        final Object[] results = preparedFilters == null ? new Object[0]
+                : searchAndReadResults(preparedFilters, fieldArray, offset, limit, order);
+        return new RowCollection(results, createFieldCollection(fieldArray));
+    }
+
+    /**
+     * Combines the searchObject and readObject calls and returns the rows in a column oriented collection. Use it for
+     * large extracts of mostly numeric data, where a RowCollection would hold a boxed value per field per row.
+     *
+     * @param filter A filter collection that contains a list of filters to be applied
+     * @param fields List of fields to return data for
+     * @param offset Number of records to skip. -1 for no offset.
+     * @param limit Maximum number of rows to return. -1 for no limit.
+     * @param order Field name to order on
+     * @return A column oriented collection of rows for an Odoo object
+     * @throws OdooApiException
+     */
+    public ColumnarRowCollection searchAndReadColumnar(final FilterCollection filter, final String[] fields,
+            int offset, int limit, String order) throws OdooApiException {
+        String[] fieldArray = fields == null ? new String[]{} : fields;
+        return new ColumnarRowCollection(
+                searchAndReadResults(validateFilters(filter), fieldArray, offset, limit, order),
+                createFieldCollection(fieldArray));
+    }
 
+    /**
+     * Combines the searchObject and readObject calls for extracts that may not fit in memory. Rows are read in pages
+     * and moved to a temporary file once they exceed the memory budget. Close the returned collection to delete the
+     * file.
+     *
+     * @param filter A filter collection that contains a list of filters to be applied
+     * @param fields List of fields to return data for
+     * @param order Field name to order on. The pages are ordered on id if none is given.
+     * @param pageSize Number of rows to read per call
+     * @param memoryBudget Estimated number of bytes the rows may use on the heap
+     * @return A collection of rows for an Odoo object
+     * @throws OdooApiException
+     */
+    public SpillableRowCollection searchAndReadSpillable(final FilterCollection filter, final String[] fields,
+            String order, int pageSize, long memoryBudget) throws OdooApiException {
+        if (pageSize <= 0) {
+            throw new OdooApiException("Page size must be greater than zero");
+        }
+        String[] fieldArray = fields == null ? new String[]{} : fields;
+        String pageOrder = order == null || order.isEmpty() ? "id" : order;
+        SpillableRowCollection rows = new SpillableRowCollection(createFieldCollection(fieldArray), memoryBudget);
+        try {
+            final Object[] preparedFilters = validateFilters(filter);
+            int offset = 0;
+            Object[] page;
+            do {
+                page = searchAndReadResults(preparedFilters, fieldArray, offset, pageSize, pageOrder);
+                rows.addAll(page);
+                offset += page.length;
+            } while (page.length == pageSize);
+        } catch (RuntimeException | OdooApiException ex) {
+            rows.close();
+            throw ex;
+        }
+        return rows;
+    }
+
+    private Object[] searchAndReadResults(final Object[] preparedFilters, final String[] fieldArray, int offset,
+            int limit, String order) throws OdooApiException {
         try {
-            String[] fieldArray = fields == null ? new String[]{} : fields;
-            Object[] preparedFilters = validateFilters(filter);
             Object[] idList = null;
             Response response = command.searchObject(modelName, preparedFilters, offset, limit, order, false);
             if (response.isSuccessful()) {
                 idList = response.getResponseObjectAsArray();
             }
             if (this.serverVersion.getMajor() > 13) {
-                Object[] results = command.executeCommandRead(modelName, fieldArray, idList);
-                RowCollection rowCollection = new RowCollection(results, createFieldCollection(fieldArray));
-                return rowCollection;
+                return command.executeCommandRead(modelName, fieldArray, idList);
             }
-            else return readObject(idList, fieldArray);
+            else return command.readObject(modelName, idList, fieldArray);
         } catch (XmlRpcException ex) {
             throw new XmlRpcRuntimeException(ex);
         }
+    }
 
+    /**
+     * Returns the codec used to convert values for the server. Values without a time zone are converted using the
+     * time zone of the session context.
+     *
+     * @return
+     */
+    public ValueCodec getValueCodec() {
+        return ValueCodec.forContext(command.getContext());
     }
 
-    private Object formatValueForWrite(Field fld, Object value) {
-        return value == null ? false : formatValueBasedOnFieldTypeForWrite(fld, value);
+    /**
+     * Writes a collection of rows to the database by calling the write function on the object the Row is holding data
+     * for
+     *
+     * @param rows Row collection to submit
+     * @param changesOnly Only changed values will be submitted to the database.
+     * @return An array of logicals. One for each row to indicate if the update was successful
+     * @throws OdooApiException
+     */
+    public Boolean[] writeObject(final RowCollection rows, final boolean changesOnly) throws OdooApiException {
+        return writeRows(rows, changesOnly, null);
     }
 
-    private Object formatValueBasedOnFieldTypeForWrite(Field fld, Object value) {
-        switch (fld.getType()) {
-            case BOOLEAN:
-                return value;
-            case FLOAT:
-                return Double.valueOf(value.toString());
-            case MANY2MANY:
-                return formatManyToManyForWrite(value);
-            case MANY2ONE:
-            case ONE2MANY: {
-                return formatOneToManyForWrite(value);
-            }
-            case INTEGER:
-                return formatIntegerForWrite(value);
-            case DATE:
-                return DateTimeFormatter.formatDateForWrite(value);
-            case DATETIME:
-                return DateTimeFormatter.formatDateTimeForWrite(value);
-            default:
-                return value.toString();
+    private Boolean[] writeRows(final RowCollection rows, final boolean changesOnly, final String excludedField)
+            throws OdooApiException {
+        final List<Map<String, Object>> valueLists = new ArrayList<>(rows.size());
+        for (MapRow mapRow : rows) {
+            valueLists.add(this.collectValues(mapRow, changesOnly, excludedField));
         }
+        final Boolean[] returnValues = new Boolean[rows.size()];
+        writeValues(rows, valueLists, returnValues, true);
+        return returnValues;
     }
 
-    private Object formatManyToManyForWrite(Object value) {
-        // For write, otherwise it is a comma separated list of strings used
-        // by import
-        if (value instanceof Object[]) {
-            Object[] tmp = new Object[]{6, 0, (Object[]) value};
-            return new Object[][]{tmp};
-        } else {
-            return value;
+    /**
+     * Writes values that were already collected for the rows. Rows that write the same values are sent in one write
+     * call per chunk of IDs. Rows whose ID appears more than once are written one by one in row order, so the last row
+     * wins like it would without grouping.
+     *
+     * @param rows Rows to write
+     * @param valueLists Encoded values per row. Rows without values are not written.
+     * @param returnValues Receives the result per row as calls return, so it is filled up to a failure
+     * @param applyChanges Mark the changes of written rows as applied
+     * @throws OdooApiException
+     */
+    void writeValues(final RowCollection rows, final List<Map<String, Object>> valueLists,
+            final Boolean[] returnValues, final boolean applyChanges) throws OdooApiException {
+        final Map<Integer, Integer> idCounts = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            final MapRow mapRow = rows.get(i);
+            if (mapRow.getID() <= 0) {
+                throw new OdooApiException("Please set the id field with the database ID of the object");
+            }
+            if (valueLists.get(i).isEmpty()) {
+                returnValues[i] = false;
+            } else {
+                idCounts.merge(mapRow.getID(), 1, Integer::sum);
+            }
         }
-    }
 
-    private Object formatOneToManyForWrite(final Object value) {
-        if (value instanceof Object[]) {
-            final Object[] tmp = {6, 0, (Object[]) value};
-            return new Object[][]{tmp};
+        final Map<ValuesKey, List<Integer>> groups = new LinkedHashMap<>();
+        final List<Integer> repeatedRows = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            final Map<String, Object> valueList = valueLists.get(i);
+            if (valueList.isEmpty()) {
+                continue;
+            }
+            if (idCounts.get(rows.get(i).getID()) > 1) {
+                repeatedRows.add(i);
+            } else {
+                groups.computeIfAbsent(new ValuesKey(valueList), key -> new ArrayList<>()).add(i);
+            }
         }
-        return value;
-    }
 
-    private Object formatIntegerForWrite(Object value) {
         try {
-            // To make sure 1.0 is converted to 1
-            return Double.valueOf(value.toString()).intValue();
-        } catch (NumberFormatException e) {
-            //for versions 8 and 9 id can be array with legth 2 (id and name). for example [5, Administrator]
-            final Object[] arr = (Object[]) value;
-            return Double.valueOf(arr[0].toString()).intValue();
+            for (Entry<ValuesKey, List<Integer>> group : groups.entrySet()) {
+                final List<Integer> rowIndexes = group.getValue();
+                for (int start = 0; start < rowIndexes.size(); start += writeChunkSize) {
+                    writeChunk(rows, rowIndexes.subList(start, Math.min(start + writeChunkSize, rowIndexes.size())),
+                            group.getKey().getValues(), returnValues, applyChanges);
+                }
+            }
+            for (int rowIndex : repeatedRows) {
+                writeChunk(rows, Collections.singletonList(rowIndex), valueLists.get(rowIndex), returnValues,
+                        applyChanges);
+            }
+        } catch (XmlRpcException e) {
+            throw new OdooApiException((Throwable) e);
+        } finally {
+            if (!idCounts.isEmpty()) {
+                invalidateNameCache();
+            }
+        }
+    }
+
+    private void writeChunk(final RowCollection rows, final List<Integer> chunk, final Map<String, Object> values,
+            final Boolean[] returnValues, final boolean applyChanges) throws XmlRpcException {
+        final int[] ids = new int[chunk.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = rows.get(chunk.get(i)).getID();
+        }
+        final boolean success = this.command.writeObject(this.modelName, IdSet.of(ids), values);
+        for (int rowIndex : chunk) {
+            returnValues[rowIndex] = success;
+            if (success && applyChanges) {
+                rows.get(rowIndex).changesApplied();
+            }
         }
     }
 
     /**
-     * Writes a collection of rows to the database by calling the write function on the object the Row is holding data
-     * for
+     * Returns the maximum number of IDs sent in a single write call when rows with the same values are written together
      *
-     * @param rows Row collection to submit
-     * @param changesOnly Only changed values will be submitted to the database.
-     * @return An array of logicals. One for each row to indicate if the update was successful
-     * @throws OdooApiException
+     * @return
      */
-    public Boolean[] writeObject(final RowCollection rows, final boolean changesOnly) throws OdooApiException {
-        Boolean[] returnValues = new Boolean[rows.size()];
+    public int getWriteChunkSize() {
+        return writeChunkSize;
+    }
 
-        for (int i = 0; i < rows.size(); i++) {
-            returnValues[i] = writeObject(rows.get(i), changesOnly);
+    /**
+     * Sets the maximum number of IDs sent in a single write call when rows with the same values are written together
+     *
+     * @param writeChunkSize Number of IDs per call. Must be greater than zero.
+     */
+    public void setWriteChunkSize(int writeChunkSize) {
+        if (writeChunkSize <= 0) {
+            throw new IllegalArgumentException("Write chunk size must be greater than zero");
         }
-
-        return returnValues;
+        this.writeChunkSize = writeChunkSize;
     }
 
     public boolean writeObject(final MapRow mapRow, final boolean changesOnly) throws OdooApiException {
-        final Object idObj = mapRow.get("id");
-        if (idObj == null || Integer.parseInt(idObj.toString()) <= 0) {
+        final int id = mapRow.getID();
+        if (id <= 0) {
             throw new OdooApiException("Please set the id field with the database ID of the object");
         }
-        final int id = Integer.parseInt(idObj.toString());
         final Map<String, Object> valueList = this.collectValues(mapRow, changesOnly);
         if (valueList.isEmpty()) {
             return false;
         }
         try {
             final boolean success = this.command.writeObject(this.modelName, id, valueList);
+            invalidateNameCache();
             if (success) {
                 mapRow.changesApplied();
             }
@@ -826,8 +1525,34 @@ public class ObjectAdapter {
 //    }
 
     private Map<String, Object> collectValues(final MapRow mapRow, final boolean changesOnly) {
+        return collectValues(mapRow, changesOnly, null);
+    }
+
+    /**
+     * Encodes the values of a set of slots of a row, as taken with MapRow.takeChanges
+     */
+    Map<String, Object> collectValues(final MapRow mapRow, final BitSet slots) {
+        final ValueCodec codec = getValueCodec();
+        final Map<String, Object> values = new HashMap<>();
+        for (Field field : mapRow.getFields(slots)) {
+            values.put(field.getName(), codec.encode(field, mapRow.get(field)));
+        }
+        return values;
+    }
+
+    /**
+     * Encodes all values of a row
+     */
+    Map<String, Object> collectValues(final MapRow mapRow) {
+        return collectValues(mapRow, false, null);
+    }
+
+    private Map<String, Object> collectValues(final MapRow mapRow, final boolean changesOnly,
+            final String excludedField) {
+        final ValueCodec codec = getValueCodec();
         return (changesOnly ? mapRow.getChangedFields() : mapRow.getFields()).stream()
-                .collect(Collectors.toMap((Function<? super Field, ? extends String>) Field::getName, field -> this.formatValueForWrite(field, mapRow.get(field))));
+                .filter(field -> !field.getName().equals(excludedField))
+                .collect(Collectors.toMap((Function<? super Field, ? extends String>) Field::getName, field -> codec.encode(field, mapRow.get(field))));
     }
 
     public void createObject(final MapRow mapRow) throws OdooApiException {
@@ -844,6 +1569,269 @@ public class ObjectAdapter {
         }
     }
 
+    /**
+     * Creates an object on the Odoo server for every row in the collection. From Odoo 12 the rows are sent in chunks of
+     * getCreateChunkSize() rows per create call, older servers get one call per row. The id column is set on each row
+     * after its object was created.
+     *
+     * @param rows Rows to create objects for
+     * @throws OdooApiException
+     */
+    public void createObject(final RowCollection rows) throws OdooApiException {
+        createRows(rows, null);
+    }
+
+    private void createRows(final RowCollection rows, final String excludedField) throws OdooApiException {
+        final List<Map<String, Object>> valueLists = new ArrayList<>(rows.size());
+        for (MapRow mapRow : rows) {
+            valueLists.add(this.collectValues(mapRow, false, excludedField));
+        }
+        createValues(rows, valueLists, true);
+    }
+
+    /**
+     * Creates objects for values that were already collected for the rows. The id column of a row is set as soon as
+     * its object was created, so after a failure the rows that were created have an ID.
+     *
+     * @param rows Rows to create objects for
+     * @param valueLists Encoded values per row
+     * @param applyChanges Mark the changes of created rows as applied
+     * @throws OdooApiException
+     */
+    void createValues(final RowCollection rows, final List<Map<String, Object>> valueLists,
+            final boolean applyChanges) throws OdooApiException {
+        for (Map<String, Object> valueList : valueLists) {
+            if (valueList.isEmpty()) {
+                throw new OdooApiException("Row doesn't have any fields to update");
+            }
+        }
+        try {
+            if (this.serverVersion.getMajor() < 12) {
+                for (int i = 0; i < rows.size(); i++) {
+                    final MapRow mapRow = rows.get(i);
+                    mapRow.put("id", this.command.createObject(this.modelName, valueLists.get(i)));
+                    if (applyChanges) {
+                        mapRow.changesApplied();
+                    }
+                }
+                return;
+            }
+            for (int start = 0; start < valueLists.size(); start += createChunkSize) {
+                final int end = Math.min(start + createChunkSize, valueLists.size());
+                final int[] ids = this.command.createObjects(this.modelName, valueLists.subList(start, end));
+                if (ids.length != end - start) {
+                    throw new OdooApiException("Expected " + (end - start) + " IDs from create but the server returned "
+                            + ids.length);
+                }
+                for (int i = start; i < end; i++) {
+                    final MapRow mapRow = rows.get(i);
+                    mapRow.put("id", ids[i - start]);
+                    if (applyChanges) {
+                        mapRow.changesApplied();
+                    }
+                }
+            }
+        } catch (XmlRpcException ex) {
+            throw new XmlRpcRuntimeException((Throwable) ex);
+        }
+    }
+
+    /**
+     * Returns the maximum number of rows sent in a single create call when creating a RowCollection
+     *
+     * @return
+     */
+    public int getCreateChunkSize() {
+        return createChunkSize;
+    }
+
+    /**
+     * Sets the maximum number of rows sent in a single create call when creating a RowCollection
+     *
+     * @param createChunkSize Number of rows per call. Must be greater than zero.
+     */
+    public void setCreateChunkSize(int createChunkSize) {
+        if (createChunkSize <= 0) {
+            throw new IllegalArgumentException("Create chunk size must be greater than zero");
+        }
+        this.createChunkSize = createChunkSize;
+    }
+
+    /**
+     * Creates or updates rows by external ID. All external IDs are resolved with search_read calls on ir.model.data,
+     * in chunks of getCreateChunkSize() IDs. Rows with a known external ID are written, the other rows are created
+     * with batched create calls and their external IDs are registered after each create call, so a failed upsert can
+     * be retried without creating duplicates. Resolved IDs are cached per session.
+     *
+     * Rows that already have a database ID but no external ID are written and their external ID is registered.
+     *
+     * @param rows Rows to create or update
+     * @param externalIdField Field of the rows that holds the external ID as module.name. IDs without a module get the
+     * __import__ module, like the import function does. The field itself is not sent to the server.
+     * @return The IDs of the created records
+     * @throws OdooApiException
+     */
+    public IdSet upsert(final RowCollection rows, final String externalIdField) throws OdooApiException {
+        final String[] externalIds = new String[rows.size()];
+        final Set<String> distinctIds = new LinkedHashSet<>();
+        for (int i = 0; i < rows.size(); i++) {
+            final Object value = rows.get(i).get(externalIdField);
+            if (value == null || value instanceof Boolean || value.toString().isEmpty()) {
+                throw new OdooApiException("Row " + i + " doesn't have an external ID in field " + externalIdField);
+            }
+            externalIds[i] = value.toString().indexOf('.') < 0 ? "__import__." + value : value.toString();
+            if (!distinctIds.add(externalIds[i])) {
+                throw new OdooApiException("External ID " + externalIds[i] + " is used by more than one row");
+            }
+        }
+
+        final Map<String, Integer> resolved;
+        try {
+            resolved = resolveExternalIds(distinctIds);
+        } catch (XmlRpcException ex) {
+            throw new XmlRpcRuntimeException(ex);
+        }
+
+        final RowCollection writes = new RowCollection();
+        final RowCollection creates = new RowCollection();
+        final List<String> createIds = new ArrayList<>();
+        final RowCollection unregistered = new RowCollection();
+        final List<String> unregisteredIds = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            final MapRow mapRow = rows.get(i);
+            final Integer id = resolved.get(externalIds[i]);
+            if (id != null) {
+                mapRow.put("id", id);
+                writes.add(mapRow);
+            } else if (mapRow.getID() > 0) {
+                writes.add(mapRow);
+                unregistered.add(mapRow);
+                unregisteredIds.add(externalIds[i]);
+            } else {
+                creates.add(mapRow);
+                createIds.add(externalIds[i]);
+            }
+        }
+
+        if (!writes.isEmpty()) {
+            writeRows(writes, false, externalIdField);
+        }
+        if (!unregistered.isEmpty()) {
+            registerExternalIds(unregistered, unregisteredIds);
+        }
+        // External IDs are registered per create chunk, so records that were
+        // created before a failure are found by a retry instead of being
+        // created again
+        for (int[] range : BatchSupport.ranges(creates.size(), createChunkSize)) {
+            final RowCollection chunk = new RowCollection();
+            chunk.addAll(creates.subList(range[0], range[1]));
+            final List<String> chunkIds = createIds.subList(range[0], range[1]);
+            try {
+                createRows(chunk, externalIdField);
+            } catch (OdooApiException | RuntimeException ex) {
+                try {
+                    registerCreatedExternalIds(chunk, chunkIds);
+                } catch (OdooApiException | RuntimeException registerEx) {
+                    ex.addSuppressed(registerEx);
+                }
+                throw ex;
+            }
+            registerExternalIds(chunk, chunkIds);
+        }
+        return IdSet.fromRows(creates);
+    }
+
+    /**
+     * Looks up database IDs of external IDs of this model, using the session cache first
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Integer> resolveExternalIds(final Set<String> externalIds) throws XmlRpcException {
+        final ExternalIdCache cache = this.command.getExternalIdCache();
+        final Map<String, Integer> resolved = new HashMap<>();
+        final Map<String, List<String>> missingByModule = new HashMap<>();
+        for (String externalId : externalIds) {
+            final Integer id = cache.get(this.modelName, externalId);
+            if (id != null) {
+                resolved.put(externalId, id);
+            } else {
+                final int dot = externalId.indexOf('.');
+                missingByModule.computeIfAbsent(externalId.substring(0, dot), key -> new ArrayList<>())
+                        .add(externalId.substring(dot + 1));
+            }
+        }
+
+        for (Entry<String, List<String>> module : missingByModule.entrySet()) {
+            final List<String> names = module.getValue();
+            for (int[] range : BatchSupport.ranges(names.size(), createChunkSize)) {
+                final Object[] filter = new Object[]{
+                    new Object[]{"model", "=", this.modelName},
+                    new Object[]{"module", "=", module.getKey()},
+                    new Object[]{"name", "in", names.subList(range[0], range[1]).toArray()}};
+                for (Object result : this.command.searchReadObject("ir.model.data", filter,
+                        new String[]{"name", "res_id"})) {
+                    final Map<String, Object> data = (Map<String, Object>) result;
+                    final String externalId = module.getKey() + "." + data.get("name");
+                    final int id = IdSet.toInt(data.get("res_id"));
+                    resolved.put(externalId, id);
+                    cache.put(this.modelName, externalId, id);
+                }
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Registers the external IDs of the rows of a failed create that did get an ID
+     */
+    private void registerCreatedExternalIds(final RowCollection rows, final List<String> externalIds)
+            throws OdooApiException {
+        final RowCollection created = new RowCollection();
+        final List<String> createdIds = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getID() > 0) {
+                created.add(rows.get(i));
+                createdIds.add(externalIds.get(i));
+            }
+        }
+        if (!created.isEmpty()) {
+            registerExternalIds(created, createdIds);
+        }
+    }
+
+    /**
+     * Creates ir.model.data records for rows that were created or didn't have an external ID yet
+     */
+    private void registerExternalIds(final RowCollection rows, final List<String> externalIds) throws OdooApiException {
+        final List<Map<String, Object>> valueLists = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            final String externalId = externalIds.get(i);
+            final int dot = externalId.indexOf('.');
+            final Map<String, Object> values = new HashMap<>();
+            values.put("module", externalId.substring(0, dot));
+            values.put("name", externalId.substring(dot + 1));
+            values.put("model", this.modelName);
+            values.put("res_id", rows.get(i).getID());
+            valueLists.add(values);
+        }
+        try {
+            if (this.serverVersion.getMajor() < 12) {
+                for (Map<String, Object> values : valueLists) {
+                    this.command.createObject("ir.model.data", values);
+                }
+            } else {
+                for (int[] range : BatchSupport.ranges(valueLists.size(), createChunkSize)) {
+                    this.command.createObjects("ir.model.data", valueLists.subList(range[0], range[1]));
+                }
+            }
+        } catch (XmlRpcException ex) {
+            throw new XmlRpcRuntimeException(ex);
+        }
+        final ExternalIdCache cache = this.command.getExternalIdCache();
+        for (int i = 0; i < rows.size(); i++) {
+            cache.put(this.modelName, externalIds.get(i), rows.get(i).getID());
+        }
+    }
+
 //    /**
 //     * Creates an Object on the Odoo server by calling the create function on the server. The id column is set on the
 //     * row after the object was successfully created
@@ -985,6 +1973,126 @@ public class ObjectAdapter {
         }
     }
 
+    /**
+     * Calls a method, like action_confirm or action_post, on many records. The IDs are sent in chunks of
+     * getActionChunkSize() IDs per call, with up to getBatchParallelism() calls at the same time. When a chunk fails,
+     * for example because the method only accepts one record, the server rolls it back and the method is called for
+     * each ID of the chunk separately.
+     *
+     * @param ids IDs of the records to call the method on
+     * @param methodName Name of the method
+     * @return The IDs the method succeeded for and the IDs that failed with their errors
+     * @throws OdooApiException
+     */
+    public BatchResult executeAction(final IdSet ids, final String methodName) throws OdooApiException {
+        final BatchResult result = new BatchResult();
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (int[] range : BatchSupport.ranges(ids.size(), actionChunkSize)) {
+            final IdSet chunk = ids.subSet(range[0], range[1]);
+            tasks.add(() -> {
+                final Response response = this.command.callObjectFunction(this.modelName, methodName,
+                        new Object[]{chunk});
+                if (response.isSuccessful()) {
+                    result.recordSuccess(chunk);
+                } else if (chunk.size() == 1) {
+                    result.recordFailure(chunk, response.getErrorCause().getMessage());
+                } else {
+                    chunk.forEach(id -> executeAction(id, methodName, result));
+                }
+                return null;
+            });
+        }
+        BatchSupport.runAll(tasks, batchParallelism);
+        return result;
+    }
+
+    /**
+     * Calls a method on the records of a collection of rows, see executeAction(IdSet, String)
+     *
+     * @param rows Rows to call the method on
+     * @param methodName Name of the method
+     * @return The IDs the method succeeded for and the IDs that failed with their errors
+     * @throws OdooApiException
+     */
+    public BatchResult executeAction(final RowCollection rows, final String methodName) throws OdooApiException {
+        return executeAction(IdSet.fromRows(rows), methodName);
+    }
+
+    private void executeAction(final int id, final String methodName, final BatchResult result) {
+        final IdSet single = IdSet.of(id);
+        final Response response = this.command.callObjectFunction(this.modelName, methodName, new Object[]{single});
+        if (response.isSuccessful()) {
+            result.recordSuccess(single);
+        } else {
+            result.recordFailure(single, response.getErrorCause().getMessage());
+        }
+    }
+
+    /**
+     * Sends a workflow signal for many records. The workflow engine takes one record per call, so the calls are made
+     * with up to getBatchParallelism() calls at the same time.
+     *
+     * @param ids IDs of the records to send the signal for
+     * @param signal Signal name to send
+     * @return The IDs the signal succeeded for and the IDs that failed with their errors
+     * @throws OdooApiException
+     */
+    public BatchResult executeWorkflow(final IdSet ids, final String signal) throws OdooApiException {
+        this.checkSignalExists(signal);
+        final BatchResult result = new BatchResult();
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (int[] range : BatchSupport.ranges(ids.size(), actionChunkSize)) {
+            final IdSet chunk = ids.subSet(range[0], range[1]);
+            tasks.add(() -> {
+                chunk.forEach(id -> {
+                    try {
+                        this.command.executeWorkflow(this.modelName, signal, id);
+                        result.recordSuccess(IdSet.of(id));
+                    } catch (XmlRpcException | XmlRpcRuntimeException ex) {
+                        result.recordFailure(IdSet.of(id), ex.getMessage());
+                    }
+                });
+                return null;
+            });
+        }
+        BatchSupport.runAll(tasks, batchParallelism);
+        return result;
+    }
+
+    /**
+     * Sends a workflow signal for the records of a collection of rows, see executeWorkflow(IdSet, String)
+     *
+     * @param rows Rows to send the signal for
+     * @param signal Signal name to send
+     * @return The IDs the signal succeeded for and the IDs that failed with their errors
+     * @throws OdooApiException
+     */
+    public BatchResult executeWorkflow(final RowCollection rows, final String signal) throws OdooApiException {
+        return executeWorkflow(IdSet.fromRows(rows), signal);
+    }
+
+    /**
+     * Returns the number of IDs sent in a single call by executeAction
+     *
+     * @return
+     */
+    public int getActionChunkSize() {
+        return actionChunkSize;
+    }
+
+    /**
+     * Sets the number of IDs sent in a single call by executeAction. Workflow signals are sent per ID, the chunk size
+     * sets how many signals one thread sends.
+     *
+     * @param actionChunkSize Number of IDs per call. Must be greater than zero.
+     */
+    public void setActionChunkSize(int actionChunkSize) {
+        if (actionChunkSize <= 0) {
+            throw new IllegalArgumentException("Action chunk size must be greater than zero");
+        }
+        this.actionChunkSize = actionChunkSize;
+    }
+
     /**
      * Deletes objects from the Odoo Server
      *
@@ -992,15 +2100,113 @@ public class ObjectAdapter {
      * @return If all rows were successfully deleted
      */
     public boolean unlinkObject(RowCollection rows) {
+        return unlinkObject(IdSet.fromRows(rows));
+    }
+
+    /**
+     * Deletes objects from the Odoo Server
+     *
+     * @param ids IDs of the objects to delete
+     * @return If all objects were successfully deleted
+     */
+    public boolean unlinkObject(IdSet ids) {
         try {
-            //Object[] ids = new Object[rows.size()];
-            //for (int i = 0; i < rows.size(); i++) ids[i] = rows.get(i).getID();
-            //return this.command.unlinkObject(this.modelName, ids);
-            return this.command.unlinkObject(this.modelName,
-                    rows.stream().map(row -> row.getID()).toArray());
+            return this.command.unlinkObject(this.modelName, ids);
         } catch (XmlRpcException ex) {
             throw new XmlRpcRuntimeException(ex);
+        } finally {
+            invalidateNameCache();
+            this.command.getExternalIdCache().invalidate(this.modelName);
+        }
+    }
+
+    /**
+     * Deletes objects from the Odoo server in chunks of getUnlinkChunkSize() IDs, with up to getBatchParallelism()
+     * chunks at the same time. Each chunk is deleted in its own transaction on the server. A chunk that fails doesn't
+     * stop the other chunks.
+     *
+     * @param ids IDs of the objects to delete
+     * @return The IDs that were deleted and the IDs that failed with their errors
+     * @throws OdooApiException
+     */
+    public BatchResult unlinkObjects(final IdSet ids) throws OdooApiException {
+        final BatchResult result = new BatchResult();
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (int[] range : BatchSupport.ranges(ids.size(), unlinkChunkSize)) {
+            final IdSet chunk = ids.subSet(range[0], range[1]);
+            tasks.add(() -> {
+                try {
+                    if (this.command.unlinkObject(this.modelName, chunk)) {
+                        result.recordSuccess(chunk);
+                    } else {
+                        result.recordFailure(chunk, "The server did not delete the objects");
+                    }
+                } catch (XmlRpcException | XmlRpcRuntimeException ex) {
+                    result.recordFailure(chunk, ex.getMessage());
+                }
+                return null;
+            });
+        }
+        try {
+            BatchSupport.runAll(tasks, batchParallelism);
+        } finally {
+            invalidateNameCache();
+            this.command.getExternalIdCache().invalidate(this.modelName);
+        }
+        return result;
+    }
+
+    /**
+     * Deletes the objects of a collection of rows in chunks, see unlinkObjects(IdSet)
+     *
+     * @param rows Rows to delete
+     * @return The IDs that were deleted and the IDs that failed with their errors
+     * @throws OdooApiException
+     */
+    public BatchResult unlinkObjects(final RowCollection rows) throws OdooApiException {
+        return unlinkObjects(IdSet.fromRows(rows));
+    }
+
+    /**
+     * Returns the number of IDs sent in a single unlink call by unlinkObjects
+     *
+     * @return
+     */
+    public int getUnlinkChunkSize() {
+        return unlinkChunkSize;
+    }
+
+    /**
+     * Sets the number of IDs sent in a single unlink call by unlinkObjects
+     *
+     * @param unlinkChunkSize Number of IDs per call. Must be greater than zero.
+     */
+    public void setUnlinkChunkSize(int unlinkChunkSize) {
+        if (unlinkChunkSize <= 0) {
+            throw new IllegalArgumentException("Unlink chunk size must be greater than zero");
+        }
+        this.unlinkChunkSize = unlinkChunkSize;
+    }
+
+    /**
+     * Returns the maximum number of chunks that batch operations send to the server at the same time
+     *
+     * @return
+     */
+    public int getBatchParallelism() {
+        return batchParallelism;
+    }
+
+    /**
+     * Sets the maximum number of chunks that batch operations send to the server at the same time
+     *
+     * @param batchParallelism Number of concurrent calls. 1 sends chunks one after the other.
+     */
+    public void setBatchParallelism(int batchParallelism) {
+        if (batchParallelism <= 0) {
+            throw new IllegalArgumentException("Batch parallelism must be greater than zero");
         }
+        this.batchParallelism = batchParallelism;
     }
 
     /**
@@ -18,6 +18,7 @@
  */
 package com.odoojava.api;
 
+import java.util.List;
 import java.util.Map;
 
 import org.apache.xmlrpc.XmlRpcException;
@@ -43,6 +44,52 @@ public class OdooCommand {
         this.session = session;
     }
 
+    /**
+     * Returns the context of the session used by this command object
+     *
+     * @return
+     */
+    Context getContext() {
+        return session.getContext();
+    }
+
+    /**
+     * Returns the name_get cache of the session used by this command object
+     *
+     * @return
+     */
+    RelationNameCache getRelationNameCache() {
+        return session.getRelationNameCache();
+    }
+
+    /**
+     * Returns the external ID cache of the session used by this command object
+     *
+     * @return
+     */
+    ExternalIdCache getExternalIdCache() {
+        return session.getExternalIdCache();
+    }
+
+    /**
+     * Returns the prepared filter cache of the session used by this command
+     * object
+     *
+     * @return
+     */
+    PreparedFilterCache getPreparedFilterCache() {
+        return session.getPreparedFilterCache();
+    }
+
+    /**
+     * Returns true if the session streams requests to the server
+     *
+     * @return
+     */
+    boolean isStreamingRequests() {
+        return session.isStreamingRequests();
+    }
+
     /**
      * Searches for objects that satisfies the filter. These IDs are typically
      * used in a following readObject call to the server to get the data
@@ -121,6 +168,21 @@ public class OdooCommand {
         return fieldsArray;
     }
 
+    /**
+     * Searches for objects that satisfies the filter and reads their data in
+     * one call
+     *
+     * @param objectName The object name to do a search for
+     * @param filter A filter array that contains a list of filters to be
+     * applied.
+     * @param fields List of fields to return data for
+     * @return A map of field values per matching object
+     * @throws XmlRpcException
+     */
+    public Object[] searchReadObject(String objectName, Object[] filter, String[] fields) throws XmlRpcException {
+        return (Object[]) session.executeCommand(objectName, "search_read", new Object[]{filter, fields});
+    }
+
     /**
      * Reads object data from the Odoo server
      *
@@ -138,6 +200,40 @@ public class OdooCommand {
                 (Object[]) session.executeCommand(objectName, "read", new Object[]{ids, fields, session.getContext()});
     }
     
+    /**
+     * Reads object data from the Odoo server
+     *
+     * @param objectName Name of the object to return data for
+     * @param ids Set of ids to fetch data for
+     * @param fields List of fields to return data for
+     * @return A collection of rows for an Odoo object
+     * @throws XmlRpcException
+     */
+    public Object[] readObject(String objectName, IdSet ids, String[] fields) throws XmlRpcException {
+        return this.session.getServerVersion().getMajor() >= 8 ? 
+                (Object[]) session.executeCommandWithContext(objectName, "read", new Object[]{ids, fields}) :
+                (Object[]) session.executeCommand(objectName, "read", new Object[]{ids, fields, session.getContext()});
+    }
+
+    /**
+     * Searches for objects that satisfies the filter and returns the IDs as a
+     * set. The order of the search is not kept.
+     *
+     * @param objectName The object name to do a search for
+     * @param filter A filter array that contains a list of filters to be
+     * applied.
+     * @param offset Number of records to skip. -1 for no offset.
+     * @param limit Maximum number of rows to return. -1 for no limit.
+     * @param order Field name to order on, used with offset and limit
+     * @return The IDs of the matching objects
+     * @throws XmlRpcException
+     */
+    public IdSet searchObjectIds(String objectName, Object[] filter, int offset, int limit, String order) throws XmlRpcException {
+        Response response = searchObject(objectName, filter, offset, limit, order, false);
+        if (!response.isSuccessful()) throw new XmlRpcRuntimeException(response.getErrorCause());
+        return IdSet.fromObjects(response.getResponseObjectAsArray());
+    }
+
     public Object[] executeCommandRead(final String objectName, final String[] fields, Object [] ids) 
             throws OdooApiException, XmlRpcException {
         return (Object[]) session.executeCommandRead(objectName, fields, ids);
@@ -162,6 +258,22 @@ public class OdooCommand {
             (Boolean) session.executeCommandWithContext(objectName, "write", new Object[]{id, valueList});
     }
 
+    /**
+     * Updates the same values on several objects
+     *
+     * @param objectName Name of the object to update
+     * @param ids Database IDs of the objects to update
+     * @param valueList Field/Value pairs to update on the objects
+     * @return True if the update was successful
+     * @throws XmlRpcException
+     */
+    public boolean writeObject(String objectName, IdSet ids, Map<String, Object> valueList) throws XmlRpcException {
+        final int serverVersion = this.session.getServerVersion().getMajor();
+        return (serverVersion < 10 || serverVersion>=13) ?
+            (Boolean) session.executeCommand(objectName, "write", new Object[]{ids, valueList}) :
+            (Boolean) session.executeCommandWithContext(objectName, "write", new Object[]{ids, valueList});
+    }
+
     /**
      * Calls the import function on the server to bulk create/update records
      *
@@ -184,6 +296,24 @@ public class OdooCommand {
         return (Map<String, Object>) session.executeCommand(objectName, "load", new Object[]{fieldList, rows});
     }
 
+    /**
+     * Calls the load function on the server. The rows are serialized one by
+     * one while the request is written, so a list that creates its rows on
+     * demand is never held in memory as a whole when the session streams
+     * requests.
+     *
+     * @param objectName Name of the object to load rows for
+     * @param fieldList List of fields to load
+     * @param rows Rows to load. Fields must be in the same order as the
+     * 'fieldList' parameter
+     * @return The ids and messages returned by the server
+     * @throws XmlRpcException
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> load(String objectName, String[] fieldList, List<Object[]> rows) throws XmlRpcException {
+        return (Map<String, Object>) session.executeCommand(objectName, "load", new Object[]{fieldList, rows});
+    }
+
     /**
      * Returns the name_get result of an object in the Odoo server.
      *
@@ -209,6 +339,18 @@ public class OdooCommand {
         return (Boolean) session.executeCommand(objectName, "unlink", new Object[]{ids});
     }
 
+    /**
+     * Deletes objects from the Odoo Server
+     *
+     * @param objectName Object name to delete rows from
+     * @param ids Set of ids to delete data from
+     * @return If the command was successful
+     * @throws XmlRpcException
+     */
+    public boolean unlinkObject(String objectName, IdSet ids) throws XmlRpcException {
+        return (Boolean) session.executeCommand(objectName, "unlink", new Object[]{ids});
+    }
+
     /**
      * Creates a single object
      *
@@ -224,6 +366,29 @@ public class OdooCommand {
                 (Object) session.executeCommandWithContext(objectName, "create", new Object[]{values});
     }
 
+    /**
+     * Creates several objects in one call. Supported from Odoo 12 where create
+     * accepts a list of value maps.
+     *
+     * @param objectName Name of the object to create
+     * @param values One map of values per object to create
+     * @return The database IDs of the new objects, in the order of the values
+     * @throws XmlRpcException
+     */
+    public int[] createObjects(String objectName, List<Map<String, Object>> values) throws XmlRpcException {
+        final int serverVersion = this.session.getServerVersion().getMajor();
+        final Object[] valueArray = values.toArray();
+        final Object result = serverVersion >= 13
+                ? session.executeCommand(objectName, "create", new Object[]{valueArray})
+                : session.executeCommandWithContext(objectName, "create", new Object[]{valueArray});
+        final Object[] idObjects = result instanceof Object[] ? (Object[]) result : new Object[]{result};
+        final int[] ids = new int[idObjects.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = IdSet.toInt(idObjects[i]);
+        }
+        return ids;
+    }
+
     /**
      * Calls any function on an object. The function Odoo must have the
      * signature like (self, cr, uid, *param) and return a dictionary or object.
@@ -0,0 +1,171 @@
+/*
+ *   Copyright 2011-2012, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.xmlrpc.common.TypeFactoryImpl;
+import org.apache.xmlrpc.common.XmlRpcController;
+import org.apache.xmlrpc.common.XmlRpcStreamConfig;
+import org.apache.xmlrpc.serializer.TypeSerializer;
+import org.apache.xmlrpc.serializer.TypeSerializerImpl;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * XML-RPC type factory that knows how to write the value types of this API
+ * directly to the request, without converting them to Object arrays first.
+ *
+ * @author Pieter van der Merwe
+ */
+class OdooTypeFactory extends TypeFactoryImpl {
+
+    private static final TypeSerializer ID_SET_SERIALIZER = new IdSetSerializer();
+    private static final TypeSerializer BINARY_SERIALIZER = new BinarySerializer();
+
+    OdooTypeFactory(XmlRpcController controller) {
+        super(controller);
+    }
+
+    @Override
+    public TypeSerializer getSerializer(XmlRpcStreamConfig config, Object object) throws SAXException {
+        if (object instanceof IdSet) {
+            return ID_SET_SERIALIZER;
+        }
+        if (object instanceof InputStream || object instanceof Path) {
+            return BINARY_SERIALIZER;
+        }
+        return super.getSerializer(config, object);
+    }
+
+    /**
+     * Writes an IdSet as an array of ints
+     */
+    private static class IdSetSerializer extends TypeSerializerImpl {
+
+        @Override
+        public void write(ContentHandler handler, Object object) throws SAXException {
+            final IdSet ids = (IdSet) object;
+            final char[] digits = new char[11];
+            handler.startElement("", VALUE_TAG, VALUE_TAG, ZERO_ATTRIBUTES);
+            handler.startElement("", "array", "array", ZERO_ATTRIBUTES);
+            handler.startElement("", "data", "data", ZERO_ATTRIBUTES);
+            for (int i = 0; i < ids.size(); i++) {
+                handler.startElement("", VALUE_TAG, VALUE_TAG, ZERO_ATTRIBUTES);
+                handler.startElement("", "int", "int", ZERO_ATTRIBUTES);
+                final int start = formatInt(ids.get(i), digits);
+                handler.characters(digits, start, digits.length - start);
+                handler.endElement("", "int", "int");
+                handler.endElement("", VALUE_TAG, VALUE_TAG);
+            }
+            handler.endElement("", "data", "data");
+            handler.endElement("", "array", "array");
+            handler.endElement("", VALUE_TAG, VALUE_TAG);
+        }
+
+        // Writes the digits right aligned in the buffer and returns the start
+        private static int formatInt(final int value, final char[] buffer) {
+            long remaining = Math.abs((long) value);
+            int pos = buffer.length;
+            do {
+                buffer[--pos] = (char) ('0' + remaining % 10);
+                remaining /= 10;
+            } while (remaining > 0);
+            if (value < 0) buffer[--pos] = '-';
+            return pos;
+        }
+    }
+
+    /**
+     * Writes the content of a stream or file as a base64 string, the format of
+     * binary fields. The content is read and encoded in blocks while the
+     * request is written, so it is never held in memory as a whole. Streams
+     * are read to the end but not closed, files are opened and closed here.
+     *
+     * A stream can only be sent once. Sending it again, for example when a
+     * failed write is retried or a write is split in chunks, fails instead of
+     * sending an empty value. Only Path and byte[] values may be sent again.
+     */
+    private static class BinarySerializer extends TypeSerializerImpl {
+
+        // Multiple of 3, so the blocks encode without padding
+        private static final int BLOCK_SIZE = 3 * 16 * 1024;
+
+        // Streams already read to the end, weakly held so they can be collected
+        private final Map<InputStream, Boolean> sentStreams = Collections.synchronizedMap(new WeakHashMap<>());
+
+        @Override
+        public void write(ContentHandler handler, Object object) throws SAXException {
+            handler.startElement("", VALUE_TAG, VALUE_TAG, ZERO_ATTRIBUTES);
+            handler.startElement("", "string", "string", ZERO_ATTRIBUTES);
+            try {
+                if (object instanceof Path) {
+                    try (InputStream in = Files.newInputStream((Path) object)) {
+                        writeBase64(handler, in);
+                    }
+                } else {
+                    if (sentStreams.put((InputStream) object, Boolean.TRUE) != null) {
+                        throw new SAXException("The binary value stream was already sent. Use a Path or byte[] for"
+                                + " values that can be sent more than once.");
+                    }
+                    writeBase64(handler, (InputStream) object);
+                }
+            } catch (IOException e) {
+                throw new SAXException("Could not read binary value: " + e.getMessage(), e);
+            }
+            handler.endElement("", "string", "string");
+            handler.endElement("", VALUE_TAG, VALUE_TAG);
+        }
+
+        private static void writeBase64(ContentHandler handler, InputStream in) throws IOException, SAXException {
+            final Base64.Encoder encoder = Base64.getEncoder();
+            final byte[] block = new byte[BLOCK_SIZE];
+            final byte[] encoded = new byte[BLOCK_SIZE / 3 * 4];
+            final char[] chars = new char[encoded.length];
+            int filled;
+            while ((filled = readBlock(in, block)) > 0) {
+                final int length = encoder.encode(filled == block.length
+                        ? block : Arrays.copyOf(block, filled), encoded);
+                for (int i = 0; i < length; i++) {
+                    chars[i] = (char) encoded[i];
+                }
+                handler.characters(chars, 0, length);
+                if (filled < block.length) break;
+            }
+        }
+
+        // Fills the block unless the end of the stream is reached
+        private static int readBlock(InputStream in, byte[] block) throws IOException {
+            int filled = 0;
+            int read;
+            while (filled < block.length && (read = in.read(block, filled, block.length - filled)) >= 0) {
+                filled += read;
+            }
+            return filled;
+        }
+    }
+}
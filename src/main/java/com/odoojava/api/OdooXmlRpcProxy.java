@@ -67,6 +67,7 @@ public class OdooXmlRpcProxy extends XmlRpcClient {
      */
     public OdooXmlRpcProxy(RPCProtocol protocol, String host, int port, RPCServices service) {
         super();
+        this.setTransportFactory(new ChunkedHttpTransportFactory(this));
 
         String URL = "";
 
@@ -111,6 +112,21 @@ public class OdooXmlRpcProxy extends XmlRpcClient {
         } catch (MalformedURLException e) {}
 
         this.setConfig(xmlrpcConfigLogin);
+        this.setTypeFactory(new OdooTypeFactory(this));
+    }
+
+    /**
+     * Streams requests to the server with chunked transfer encoding instead of building each request in memory
+     * first. Use it for large calls, like imports, to servers or proxies that accept chunked requests.
+     *
+     * @param streamingRequests True to stream requests
+     */
+    public void setStreamingRequests(boolean streamingRequests) {
+        ((XmlRpcClientConfigImpl) this.getClientConfig()).setContentLengthOptional(streamingRequests);
+    }
+
+    public boolean isStreamingRequests() {
+        return ((XmlRpcClientConfigImpl) this.getClientConfig()).isContentLengthOptional();
     }
 
     final void useProxyIfAvailable(RPCProtocol protocol) {
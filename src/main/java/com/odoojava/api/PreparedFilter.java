@@ -0,0 +1,244 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+
+import com.odoojava.api.Field.FieldType;
+import com.odoojava.api.helpers.FilterHelper;
+
+/**
+ * A filter that was validated once against the fields of a model. Values in
+ * the filter can be left open with PARAMETER and are given when the filter is
+ * bound, so a search that runs many times with different values only converts
+ * the values.
+ *
+ * For example: FilterCollection filters = new FilterCollection();
+ * filters.add("partner_id", "=", PreparedFilter.PARAMETER);
+ * filters.add("state", "=", "draft"); PreparedFilter prepared =
+ * adapter.prepareFilter(filters); adapter.searchIds(prepared, partnerId);
+ *
+ * Prepared filters are immutable and cached per session, model and filter.
+ *
+ * @author Pieter van der Merwe
+ *
+ */
+public final class PreparedFilter {
+
+    /**
+     * Placeholder for a value that is given when the filter is bound
+     */
+    public static final Object PARAMETER = new Object() {
+        @Override
+        public String toString() {
+            return "?";
+        }
+    };
+
+    private final String modelName;
+    // Validated domain, with null where a parameter goes
+    private final Object[] domain;
+    private final int[] parameterPositions;
+    private final String[] parameterFieldNames;
+    private final String[] parameterComparisons;
+    private final Field[] parameterFields;
+
+    private PreparedFilter(final String modelName, final Object[] domain, final int parameterCount) {
+        this.modelName = modelName;
+        this.domain = domain;
+        this.parameterPositions = new int[parameterCount];
+        this.parameterFieldNames = new String[parameterCount];
+        this.parameterComparisons = new String[parameterCount];
+        this.parameterFields = new Field[parameterCount];
+    }
+
+    /**
+     * Validates a filter and converts its values
+     *
+     * @param modelName Model the filter is for
+     * @param filters Filter in the format returned by
+     * FilterCollection.getFilters
+     * @param fieldsByName Fields of the model
+     * @return
+     * @throws OdooApiException If the filter is not valid for the model
+     */
+    static PreparedFilter compile(final String modelName, final Object[] filters, final Map<String, Field> fieldsByName)
+            throws OdooApiException {
+        int parameterCount = 0;
+        for (Object filter : filters) {
+            if (filter instanceof Object[] && ((Object[]) filter).length == 3 && ((Object[]) filter)[2] == PARAMETER) {
+                parameterCount++;
+            }
+        }
+
+        final PreparedFilter prepared = new PreparedFilter(modelName, new Object[filters.length], parameterCount);
+        int parameter = 0;
+        for (int i = 0; i < filters.length; i++) {
+            final Object filter = filters[i];
+
+            if (filter == null) throw new IllegalArgumentException("null filter parameter is not allowed");
+
+            // Is a logical operator
+            if (filter instanceof String) {
+                prepared.domain[i] = filter;
+                continue;
+            }
+
+            // Is a comparison filter
+            if (!(filter instanceof Object[]) || ((Object[]) filter).length != 3) {
+                throw new OdooApiException("Filters aren't in the correct format.  Please read the Odoo help.");
+            }
+            final Object[] filterObjects = (Object[]) filter;
+
+            final String fieldName = filterObjects[0].toString();
+            final String comparison = filterObjects[1].toString();
+            final Field fld = fieldsByName.get(fieldName);
+
+            // Can't search on calculated fields
+            if (fld != null && fld.getFunc_method()) {
+                throw new OdooApiException("Can not search on function field " + fieldName);
+            }
+            if (!"id".equals(fieldName) && fld == null) {
+                throw new OdooApiException("Unknow filter field " + fieldName);
+            }
+
+            if (filterObjects[2] == PARAMETER) {
+                prepared.parameterPositions[parameter] = i;
+                prepared.parameterFieldNames[parameter] = fieldName;
+                prepared.parameterComparisons[parameter] = comparison;
+                prepared.parameterFields[parameter] = fld;
+                parameter++;
+            } else {
+                prepared.domain[i] = convertTerm(fieldName, comparison, filterObjects[2], fld);
+            }
+        }
+        return prepared;
+    }
+
+    /**
+     * Returns the domain for the Odoo search function with the parameters
+     * filled in
+     *
+     * @param values A value for every PARAMETER, in the order of the filter
+     * @return The domain. The comparison arrays in it are shared between
+     * calls and must not be changed.
+     * @throws OdooApiException If the number of values doesn't match or a
+     * value can't be converted
+     */
+    public Object[] bind(final Object... values) throws OdooApiException {
+        final int count = values == null ? 0 : values.length;
+        if (count != parameterPositions.length) {
+            throw new OdooApiException("Filter expects " + parameterPositions.length + " parameters, got " + count);
+        }
+        final Object[] result = domain.clone();
+        for (int i = 0; i < count; i++) {
+            result[parameterPositions[i]] = convertTerm(parameterFieldNames[i], parameterComparisons[i], values[i],
+                    parameterFields[i]);
+        }
+        return result;
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    public int getParameterCount() {
+        return parameterPositions.length;
+    }
+
+    /**
+     * Fixes the data type of a comparison value if required for the Odoo
+     * server
+     */
+    private static Object[] convertTerm(final String fieldName, String comparison, Object value, final Field fld)
+            throws OdooApiException {
+        if ("is null".equals(comparison)) {
+            comparison = "=";
+            value = false;
+        } else if ("is not null".equals(comparison)) {
+            comparison = "!=";
+            value = false;
+        } else if (fld != null && fld.getType() == FieldType.BOOLEAN && !(value instanceof Boolean)) {
+            value = convertToBoolean(value);
+        } else if (fld != null && fld.getType() == FieldType.FLOAT && !(value instanceof Double)) {
+            value = Double.parseDouble(value.toString());
+        } else if (fld != null && fld.getType() == FieldType.DATE && value instanceof Date) {
+            value = ValueCodec.UTC.encodeDate(value);
+        } else if (fld != null && fld.getType() == FieldType.DATETIME && value instanceof Date) {
+            value = ValueCodec.UTC.encodeDateTime(value);
+        } else if ("=".equals(comparison)) {
+
+            // If a integer field is not an integer in a '=' comparison,
+            // parse it as an int
+            if (!(value instanceof Integer)) {
+                if ("id".equals(fieldName)
+                        || (fld != null && fld.getType() == FieldType.INTEGER)
+                        || (fld != null && fld.getType() == FieldType.MANY2ONE)) {
+                    value = Integer.parseInt(value.toString());
+                }
+            }
+        } else if ("in".equalsIgnoreCase(comparison)) {
+            if (value instanceof String) {
+                // Split by , where the , isn't preceded by a \
+                final String[] entries = value.toString().split("(?<!\\\\),");
+                final Object[] valueArr = new Object[entries.length];
+                for (int entrIdx = 0; entrIdx < entries.length; entrIdx++) {
+                    final String entry = FilterHelper.csvDecodeString(entries[entrIdx]);
+
+                    // For relation fields or integer fields we build an
+                    // array of integers
+                    if (fld != null
+                            && (fld.getType() == FieldType.INTEGER || fld.getType() == FieldType.ONE2MANY
+                            || fld.getType() == FieldType.MANY2MANY || fld.getType() == FieldType.MANY2ONE)
+                            || "id".equals(fieldName)) {
+                        valueArr[entrIdx] = Integer.parseInt(entry);
+                    } else {
+                        valueArr[entrIdx] = entry;
+                    }
+                }
+                value = valueArr;
+            } // If it is a single value, just put it in an array
+            else if (!(value instanceof Object[]) && !(value instanceof IdSet)) {
+                value = new Object[]{value};
+            }
+        }
+        return new Object[]{fieldName, comparison, value};
+    }
+
+    private static Object convertToBoolean(final Object value) throws OdooApiException {
+        if (value instanceof String) {
+            final char firstchar = value.toString().toLowerCase(Locale.getDefault()).charAt(0);
+            switch (firstchar) {
+                case '1':
+                case 'y':
+                case 't':
+                    return true;
+                case '0':
+                case 'n':
+                case 'f':
+                    return false;
+                default:
+                    throw new OdooApiException("Unknown boolean " + value.toString());
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of prepared filters per model and filter, shared by the
+ * adapters of a session. Filters with the same fields, comparisons, constant
+ * values and parameter positions share one prepared filter.
+ */
+final class PreparedFilterCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final Map<Key, PreparedFilter> filters;
+
+    PreparedFilterCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    PreparedFilterCache(final int maxEntries) {
+        this.filters = new LinkedHashMap<Key, PreparedFilter>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedFilter> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    synchronized PreparedFilter get(final String model, final Object[] filters) {
+        return this.filters.get(new Key(model, filters));
+    }
+
+    synchronized void put(final String model, final Object[] filters, final PreparedFilter prepared) {
+        this.filters.put(new Key(model, filters), prepared);
+    }
+
+    synchronized void clear() {
+        filters.clear();
+    }
+
+    private static final class Key {
+
+        private final String model;
+        private final Object[] filters;
+        private final int hash;
+
+        private Key(final String model, final Object[] filters) {
+            this.model = model;
+            this.filters = filters;
+            this.hash = 31 * model.hashCode() + Arrays.deepHashCode(filters);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hash == other.hash && model.equals(other.model) && Arrays.deepEquals(filters, other.filters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
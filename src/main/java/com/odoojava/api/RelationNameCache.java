@@ -0,0 +1,68 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of name_get results per model, used to convert many2many IDs
+ * to names for the import function. Each model keeps its most recently used
+ * names. Adapters invalidate a model when they change its records.
+ */
+final class RelationNameCache {
+
+    static final int DEFAULT_MAX_ENTRIES_PER_MODEL = 10000;
+
+    private final Map<String, LinkedHashMap<Integer, String>> names = new HashMap<>();
+    private final int maxEntriesPerModel;
+
+    RelationNameCache() {
+        this(DEFAULT_MAX_ENTRIES_PER_MODEL);
+    }
+
+    RelationNameCache(int maxEntriesPerModel) {
+        this.maxEntriesPerModel = maxEntriesPerModel;
+    }
+
+    synchronized String get(final String model, final int id) {
+        final Map<Integer, String> modelNames = names.get(model);
+        return modelNames == null ? null : modelNames.get(id);
+    }
+
+    synchronized void put(final String model, final int id, final String name) {
+        names.computeIfAbsent(model, key -> new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return size() > maxEntriesPerModel;
+            }
+        }).put(id, name);
+    }
+
+    synchronized void invalidate(final String model) {
+        names.remove(model);
+    }
+
+    synchronized void clear() {
+        names.clear();
+    }
+}
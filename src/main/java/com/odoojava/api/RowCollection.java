@@ -19,7 +19,7 @@
 package com.odoojava.api;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Map;
 import lombok.NoArgsConstructor;
 
 /**
@@ -34,9 +34,15 @@ public class RowCollection extends ArrayList<MapRow> {
 
     private static final long serialVersionUID = -168965138153400087L;
 
+    @SuppressWarnings("unchecked")
     public RowCollection(final Object[] openERPResultSet, final FieldCollection fields) throws OdooApiException {
+        super(openERPResultSet.length);
+        // All rows share one schema, so they only have to hold their values.
+        // Repeated strings of the result share one instance
+        final RowSchema schema = new RowSchema(fields);
+        final StringPool stringPool = new StringPool();
         for (final Object openERPResult : openERPResultSet) {
-            super.add(new MapRow((HashMap<String, Object>) openERPResult, fields));
+            super.add(new MapRow((Map<String, Object>) openERPResult, schema, stringPool));
         }
     }
 
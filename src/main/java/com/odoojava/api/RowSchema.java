@@ -0,0 +1,91 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the field names of a FieldCollection to slot numbers. A single schema
+ * is shared by all the MapRow objects of a RowCollection, so every row only
+ * has to keep an array of values.
+ *
+ * The field collection passed in should not be changed after the schema was
+ * created.
+ */
+public final class RowSchema implements Serializable {
+
+    private static final long serialVersionUID = -2304812906571338530L;
+
+    private final FieldCollection fields;
+    private final Map<String, Integer> slots;
+
+    public RowSchema(final FieldCollection fields) {
+        this.fields = fields;
+        this.slots = new HashMap<>(fields.size() * 2);
+        for (int i = 0; i < fields.size(); i++) {
+            slots.putIfAbsent(fields.get(i).getName(), i);
+        }
+    }
+
+    /**
+     * Returns the fields of this schema, in slot order
+     *
+     * @return
+     */
+    public FieldCollection getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the number of slots in a row of this schema
+     *
+     * @return
+     */
+    public int size() {
+        return fields.size();
+    }
+
+    /**
+     * Returns the slot number of a field
+     *
+     * @param fieldName Name of the field
+     * @return The slot number or -1 if the field isn't part of the schema
+     */
+    public int indexOf(final String fieldName) {
+        final Integer slot = slots.get(fieldName);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Returns the field stored in a slot
+     *
+     * @param slot Slot number
+     * @return
+     */
+    public Field getField(final int slot) {
+        return fields.get(slot);
+    }
+
+    @Override
+    public String toString() {
+        return "RowSchema(fields=" + fields + ")";
+    }
+}
@@ -28,6 +28,7 @@ import com.odoojava.api.OdooXmlRpcProxy.RPCServices;
 import java.util.Arrays;
 import static java.util.Arrays.asList;
 import java.util.stream.Collectors;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 /**
@@ -55,6 +56,15 @@ public class Session {
     private OdooXmlRpcProxy objectClient;
 //    private XmlRpcClient xmlRpcClient;
     private Version serverVersion;
+    // name_get results shared by the adapters of this session
+    @Getter(AccessLevel.PACKAGE)
+    private final RelationNameCache relationNameCache = new RelationNameCache();
+    // Resolved external IDs shared by the adapters of this session
+    @Getter(AccessLevel.PACKAGE)
+    private final ExternalIdCache externalIdCache = new ExternalIdCache();
+    // Filters prepared by the adapters of this session
+    @Getter(AccessLevel.PACKAGE)
+    private final PreparedFilterCache preparedFilterCache = new PreparedFilterCache();
 
     /**
      * * Session constructor
@@ -339,6 +349,20 @@ public class Session {
         }
     }
 
+    /**
+     * Streams object requests to the server with chunked transfer encoding,
+     * see OdooXmlRpcProxy.setStreamingRequests
+     *
+     * @param streamingRequests True to stream requests
+     */
+    public void setStreamingRequests(boolean streamingRequests) {
+        objectClient.setStreamingRequests(streamingRequests);
+    }
+
+    public boolean isStreamingRequests() {
+        return objectClient.isStreamingRequests();
+    }
+
     /**
      * Returns the Odoo server version for this session
      *
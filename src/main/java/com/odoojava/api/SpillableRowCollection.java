@@ -0,0 +1,396 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Row collection for results that may not fit on the heap. Rows are kept in
+ * memory until their estimated size exceeds the memory budget. From then on
+ * all rows are encoded to a temporary file and read back through memory
+ * mapped windows.
+ *
+ * Rows returned by get(int) and the iterator are new MapRow views. Changes to
+ * them are not stored in the collection. The collection is not thread safe and
+ * must be closed to delete the temporary file.
+ *
+ * @author Pieter van der Merwe
+ *
+ */
+public class SpillableRowCollection implements Iterable<MapRow>, Closeable {
+
+    // Size of the file regions that are mapped for reading
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_FALSE = 1;
+    private static final byte TAG_TRUE = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_DOUBLE = 4;
+    private static final byte TAG_STRING = 5;
+    private static final byte TAG_ARRAY = 6;
+    private static final byte TAG_MAP = 7;
+
+    private final RowSchema schema;
+    private final long memoryBudget;
+    private final StringPool stringPool = new StringPool();
+
+    // In memory phase
+    private final List<MapRow> heapRows = new ArrayList<>();
+    private long estimatedHeapSize = 0;
+
+    // Spilled phase
+    private File spillFile;
+    private RandomAccessFile spillAccess;
+    private FileChannel spillChannel;
+    private ByteBuffer writeBuffer;
+    private long[] rowOffsets = new long[0];
+    private int writtenRows = 0;
+    private long writePosition = 0;
+    private long flushedPosition = 0;
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+
+    private int size = 0;
+
+    /**
+     * @param fields Fields of the rows that will be added
+     * @param memoryBudget Estimated number of bytes that rows may use on the
+     * heap before they are moved to a temporary file
+     */
+    public SpillableRowCollection(final FieldCollection fields, final long memoryBudget) {
+        this.schema = new RowSchema(fields);
+        this.memoryBudget = memoryBudget;
+    }
+
+    public RowSchema getSchema() {
+        return schema;
+    }
+
+    public FieldCollection getFields() {
+        return schema.getFields();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns true if the rows were moved to the temporary file
+     *
+     * @return
+     */
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Adds rows as returned by a read call on the server
+     *
+     * @param openERPResultSet Result of the read call
+     */
+    @SuppressWarnings("unchecked")
+    public void addAll(final Object[] openERPResultSet) {
+        for (final Object openERPResult : openERPResultSet) {
+            add(new MapRow((Map<String, Object>) openERPResult, schema, stringPool));
+        }
+    }
+
+    /**
+     * Adds a row. Only the fields of this collection are kept.
+     *
+     * @param row Row to add
+     */
+    public void add(final MapRow row) {
+        final MapRow schemaRow = row.getSchema() == schema ? row : copyToSchema(row);
+        if (spillFile == null) {
+            heapRows.add(schemaRow);
+            estimatedHeapSize += estimateSize(schemaRow);
+            if (estimatedHeapSize > memoryBudget) spill();
+        } else {
+            writeRow(schemaRow);
+        }
+        size++;
+    }
+
+    private MapRow copyToSchema(final MapRow row) {
+        final Object[] values = new Object[schema.size()];
+        for (int slot = 0; slot < values.length; slot++) {
+            final int sourceSlot = row.getSchema().indexOf(schema.getField(slot).getName());
+            values[slot] = sourceSlot < 0 ? null : row.getRawValue(sourceSlot);
+        }
+        return new MapRow(schema, row.getID(), values);
+    }
+
+    /**
+     * Returns a row
+     *
+     * @param index Row index
+     * @return A new MapRow view of the row
+     */
+    public MapRow get(final int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        if (spillFile == null) return new MapRow(heapRows.get(index));
+        try {
+            return readRow(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Iterator<MapRow> iterator() {
+        return new Iterator<MapRow>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public MapRow next() {
+                if (index >= size) throw new NoSuchElementException();
+                return get(index++);
+            }
+        };
+    }
+
+    /**
+     * Releases the temporary file
+     */
+    @Override
+    public void close() {
+        heapRows.clear();
+        window = null;
+        writeBuffer = null;
+        if (spillFile != null) {
+            try {
+                spillAccess.close();
+            } catch (IOException e) {
+                // Nothing more to do, the file is deleted below
+            }
+            if (!spillFile.delete()) spillFile.deleteOnExit();
+            spillFile = null;
+        }
+        size = 0;
+        writtenRows = 0;
+    }
+
+    private void spill() {
+        try {
+            spillFile = File.createTempFile("odoo-rows", ".bin");
+            spillFile.deleteOnExit();
+            spillAccess = new RandomAccessFile(spillFile, "rw");
+            spillChannel = spillAccess.getChannel();
+            writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            rowOffsets = new long[Math.max(16, heapRows.size() * 2)];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (final MapRow row : heapRows) {
+            writeRow(row);
+        }
+        heapRows.clear();
+        estimatedHeapSize = 0;
+    }
+
+    private void writeRow(final MapRow row) {
+        if (writtenRows == rowOffsets.length) rowOffsets = Arrays.copyOf(rowOffsets, rowOffsets.length * 2);
+        rowOffsets[writtenRows++] = writePosition;
+        try {
+            putInt(row.getID());
+            for (int slot = 0; slot < schema.size(); slot++) {
+                putValue(row.getRawValue(slot));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void putValue(final Object value) throws IOException {
+        if (value == null) {
+            putByte(TAG_NULL);
+        } else if (value instanceof Boolean) {
+            putByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer) {
+            putByte(TAG_INT);
+            putInt((Integer) value);
+        } else if (value instanceof Number) {
+            putByte(TAG_DOUBLE);
+            ensureWriteSpace(8);
+            writeBuffer.putDouble(((Number) value).doubleValue());
+            writePosition += 8;
+        } else if (value instanceof Object[]) {
+            final Object[] array = (Object[]) value;
+            putByte(TAG_ARRAY);
+            putInt(array.length);
+            for (final Object element : array) putValue(element);
+        } else if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            putByte(TAG_MAP);
+            putInt(map.size());
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                putString(String.valueOf(entry.getKey()));
+                putValue(entry.getValue());
+            }
+        } else {
+            // Strings and anything else that the server doesn't return
+            putByte(TAG_STRING);
+            putString(value.toString());
+        }
+    }
+
+    private void putString(final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!writeBuffer.hasRemaining()) flushWriteBuffer();
+            final int chunk = Math.min(writeBuffer.remaining(), bytes.length - offset);
+            writeBuffer.put(bytes, offset, chunk);
+            offset += chunk;
+        }
+        writePosition += bytes.length;
+    }
+
+    private void putByte(final byte value) throws IOException {
+        ensureWriteSpace(1);
+        writeBuffer.put(value);
+        writePosition++;
+    }
+
+    private void putInt(final int value) throws IOException {
+        ensureWriteSpace(4);
+        writeBuffer.putInt(value);
+        writePosition += 4;
+    }
+
+    private void ensureWriteSpace(final int bytes) throws IOException {
+        if (writeBuffer.remaining() < bytes) flushWriteBuffer();
+    }
+
+    private void flushWriteBuffer() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            flushedPosition += spillChannel.write(writeBuffer, flushedPosition);
+        }
+        writeBuffer.clear();
+    }
+
+    private MapRow readRow(final int index) throws IOException {
+        final long start = rowOffsets[index];
+        final long end = index + 1 < writtenRows ? rowOffsets[index + 1] : writePosition;
+        if (end > flushedPosition) flushWriteBuffer();
+        final int length = (int) (end - start);
+        if (window == null || start < windowStart || end > windowStart + window.capacity()) {
+            final long mapSize = Math.max(length, Math.min(WINDOW_SIZE, flushedPosition - start));
+            window = spillChannel.map(FileChannel.MapMode.READ_ONLY, start, mapSize);
+            windowStart = start;
+        }
+        final ByteBuffer buffer = window.duplicate();
+        buffer.position((int) (start - windowStart));
+        final int id = buffer.getInt();
+        final Object[] values = new Object[schema.size()];
+        for (int slot = 0; slot < values.length; slot++) {
+            values[slot] = stringPool.internValue(schema.getField(slot).getType(), getValue(buffer));
+        }
+        return new MapRow(schema, id, values);
+    }
+
+    private Object getValue(final ByteBuffer buffer) {
+        final byte tag = buffer.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_INT:
+                return buffer.getInt();
+            case TAG_DOUBLE:
+                return buffer.getDouble();
+            case TAG_STRING:
+                return getString(buffer);
+            case TAG_ARRAY: {
+                final Object[] array = new Object[buffer.getInt()];
+                for (int i = 0; i < array.length; i++) array[i] = getValue(buffer);
+                return array;
+            }
+            case TAG_MAP: {
+                final int entries = buffer.getInt();
+                final Map<String, Object> map = new HashMap<>(entries * 2);
+                for (int i = 0; i < entries; i++) {
+                    final String key = getString(buffer);
+                    map.put(key, getValue(buffer));
+                }
+                return map;
+            }
+            default:
+                throw new IllegalStateException("Corrupt row data in " + spillFile);
+        }
+    }
+
+    private static String getString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Rough heap size of a row: object headers, the value array and the values
+    private static long estimateSize(final MapRow row) {
+        long bytes = 64 + 8L * row.getSchema().size();
+        for (int slot = 0; slot < row.getSchema().size(); slot++) {
+            bytes += estimateSize(row.getRawValue(slot));
+        }
+        return bytes;
+    }
+
+    private static long estimateSize(final Object value) {
+        if (value == null || value instanceof Boolean) return 0;
+        if (value instanceof String) return 40 + 2L * ((String) value).length();
+        if (value instanceof Object[]) {
+            long bytes = 16 + 8L * ((Object[]) value).length;
+            for (final Object element : (Object[]) value) bytes += estimateSize(element);
+            return bytes;
+        }
+        return 16;
+    }
+}
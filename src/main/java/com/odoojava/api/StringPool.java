@@ -0,0 +1,83 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded dictionary used while decoding a result set so that repeated
+ * values (selection codes, many2one names, dates etc.) share one String
+ * instance. Once the pool is full, new values are returned as is.
+ *
+ * Not thread safe, a pool is used for a single result.
+ */
+class StringPool {
+
+    static final int DEFAULT_MAX_ENTRIES = 8192;
+
+    // Longer strings are unlikely to repeat and are not pooled
+    private static final int MAX_LENGTH = 128;
+
+    private final Map<String, String> pool = new HashMap<>();
+    private final int maxEntries;
+
+    StringPool() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    StringPool(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    String intern(String value) {
+        if (value == null || value.length() > MAX_LENGTH) return value;
+        final String pooled = pool.get(value);
+        if (pooled != null) return pooled;
+        if (pool.size() < maxEntries) pool.put(value, value);
+        return value;
+    }
+
+    /**
+     * Pools the strings of a server value for the given field type
+     *
+     * @param type Type of the field the value is for
+     * @param value Server value. Arrays are updated in place.
+     * @return The value to store
+     */
+    Object internValue(Field.FieldType type, Object value) {
+        switch (type) {
+            case CHAR:
+            case SELECTION:
+            case DATE:
+            case DATETIME:
+                return value instanceof String ? intern((String) value) : value;
+            case MANY2ONE:
+                // [id, display name]
+                if (value instanceof Object[] && ((Object[]) value).length > 1
+                        && ((Object[]) value)[1] instanceof String) {
+                    final Object[] idName = (Object[]) value;
+                    idName[1] = intern((String) idName[1]);
+                }
+                return value;
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for MapRow changes. Attached rows report their changes
+ * through the RowChangedListener interface. Changes to the same row are
+ * combined until the unit flushes, which happens on commit, when the number of
+ * changed rows reaches the flush threshold or, if an interval was given, on a
+ * timer.
+ *
+ * A flush sends rows without an ID with batched create calls and writes the
+ * changed fields of the other rows, one write call per set of rows with the
+ * same changes.
+ *
+ * Rows can be changed while a timed flush runs. A flush takes the changed
+ * fields of each row atomically with MapRow.put and marks them changed again
+ * if sending them fails, so no change is lost between collecting and sending
+ * the values.
+ *
+ * Binary values given as an InputStream can only be sent once, so a flush that
+ * fails after sending them cannot be repeated. Use a Path or byte[] for binary
+ * values of rows that may be sent again.
+ *
+ * @author Pieter van der Merwe
+ *
+ */
+public class UnitOfWork implements MapRow.RowChangedListener, AutoCloseable {
+
+    private static final long serialVersionUID = 6734123405985113240L;
+
+    public static final int DEFAULT_FLUSH_THRESHOLD = 500;
+
+    private final transient ObjectAdapter adapter;
+    private final int flushThreshold;
+    // Rows with changes that were not sent yet. MapRow doesn't override equals,
+    // so rows are kept by identity in the order they were changed
+    private final transient Set<MapRow> pendingRows = new LinkedHashSet<>();
+    private final transient Set<MapRow> attachedRows = new LinkedHashSet<>();
+    private transient ScheduledExecutorService timer;
+    private transient Exception lastFlushError;
+
+    /**
+     * Creates a unit of work that flushes on commit or when
+     * DEFAULT_FLUSH_THRESHOLD rows changed
+     *
+     * @param adapter Adapter of the model the rows belong to
+     */
+    public UnitOfWork(final ObjectAdapter adapter) {
+        this(adapter, DEFAULT_FLUSH_THRESHOLD, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param adapter Adapter of the model the rows belong to
+     * @param flushThreshold Number of changed rows that triggers a flush
+     * @param flushInterval Time between timed flushes. 0 to only flush on
+     * commit and on the threshold.
+     * @param unit Unit of the flush interval
+     */
+    public UnitOfWork(final ObjectAdapter adapter, final int flushThreshold, final long flushInterval,
+            final TimeUnit unit) {
+        if (flushThreshold <= 0) {
+            throw new IllegalArgumentException("Flush threshold must be greater than zero");
+        }
+        this.adapter = adapter;
+        this.flushThreshold = flushThreshold;
+        if (flushInterval > 0) {
+            timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "odoo-unit-of-work");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleWithFixedDelay(this::timedFlush, flushInterval, flushInterval, unit);
+        }
+    }
+
+    /**
+     * Starts tracking changes of a row. Rows without an ID and rows that
+     * already have changes are flushed with the next flush.
+     *
+     * @param mapRow Row to track
+     */
+    public synchronized void attach(final MapRow mapRow) {
+        if (attachedRows.add(mapRow)) {
+            mapRow.addRowChangedLisener(this);
+        }
+        if (mapRow.getID() == 0 || !mapRow.getChangedFields().isEmpty()) {
+            pendingRows.add(mapRow);
+        }
+    }
+
+    /**
+     * Starts tracking changes of all rows in a collection
+     *
+     * @param rows Rows to track
+     */
+    public synchronized void attach(final RowCollection rows) {
+        for (MapRow mapRow : rows) {
+            attach(mapRow);
+        }
+    }
+
+    /**
+     * Stops tracking a row. Changes of the row that were not flushed yet are
+     * not sent.
+     *
+     * @param mapRow Row to stop tracking
+     */
+    public synchronized void detach(final MapRow mapRow) {
+        mapRow.removeRowChangedListener(this);
+        attachedRows.remove(mapRow);
+        pendingRows.remove(mapRow);
+    }
+
+    @Override
+    public void rowChanged(final Field field, final MapRow mapRow) {
+        final boolean flush;
+        synchronized (this) {
+            pendingRows.add(mapRow);
+            flush = pendingRows.size() >= flushThreshold;
+        }
+        if (flush) {
+            try {
+                commit();
+            } catch (OdooApiException | RuntimeException ex) {
+                // The rows stay pending and are sent with the next flush
+                synchronized (this) {
+                    lastFlushError = ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of rows with changes that were not sent yet
+     *
+     * @return
+     */
+    public synchronized int getPendingCount() {
+        return pendingRows.size();
+    }
+
+    /**
+     * Returns the error of the last flush that was triggered by the threshold
+     * or the timer, or null if it succeeded
+     *
+     * @return
+     */
+    public synchronized Exception getLastFlushError() {
+        return lastFlushError;
+    }
+
+    /**
+     * Sends all pending changes to the server. The changes of each row are
+     * taken atomically with MapRow.put before they are sent, so values put
+     * while the flush runs are sent with the next flush. Changes that could
+     * not be sent stay pending.
+     *
+     * @throws OdooApiException
+     */
+    public synchronized void commit() throws OdooApiException {
+        if (pendingRows.isEmpty()) {
+            return;
+        }
+        final RowCollection newRows = new RowCollection();
+        final RowCollection changedRows = new RowCollection();
+        final List<BitSet> newSlots = new ArrayList<>();
+        final List<BitSet> changedSlots = new ArrayList<>();
+        final List<Map<String, Object>> newValues = new ArrayList<>();
+        final List<Map<String, Object>> changedValues = new ArrayList<>();
+        for (MapRow mapRow : pendingRows) {
+            final BitSet slots = mapRow.takeChanges();
+            if (mapRow.getID() == 0) {
+                newRows.add(mapRow);
+                newSlots.add(slots);
+                newValues.add(adapter.collectValues(mapRow));
+            } else {
+                changedRows.add(mapRow);
+                changedSlots.add(slots);
+                changedValues.add(adapter.collectValues(mapRow, slots));
+            }
+        }
+
+        final Boolean[] written = new Boolean[changedRows.size()];
+        try {
+            if (!changedRows.isEmpty()) {
+                adapter.writeValues(changedRows, changedValues, written, false);
+            }
+            if (!newRows.isEmpty()) {
+                adapter.createValues(newRows, newValues, false);
+            }
+        } finally {
+            // Rows that were sent leave the pending set, the others get their
+            // changes back
+            for (int i = 0; i < changedRows.size(); i++) {
+                settle(changedRows.get(i), changedSlots.get(i),
+                        Boolean.TRUE.equals(written[i]) || changedValues.get(i).isEmpty());
+            }
+            for (int i = 0; i < newRows.size(); i++) {
+                settle(newRows.get(i), newSlots.get(i), newRows.get(i).getID() != 0);
+            }
+        }
+        lastFlushError = null;
+    }
+
+    private void settle(final MapRow mapRow, final BitSet slots, final boolean sent) {
+        if (sent) {
+            mapRow.changesSent(slots);
+            pendingRows.remove(mapRow);
+        } else {
+            mapRow.restoreChanges(slots);
+        }
+    }
+
+    private void timedFlush() {
+        try {
+            commit();
+        } catch (OdooApiException | RuntimeException ex) {
+            synchronized (this) {
+                lastFlushError = ex;
+            }
+        }
+    }
+
+    /**
+     * Sends the pending changes, stops the timer and detaches all rows
+     *
+     * @throws OdooApiException
+     */
+    @Override
+    public synchronized void close() throws OdooApiException {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+        commit();
+        for (MapRow mapRow : new ArrayList<>(attachedRows)) {
+            detach(mapRow);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Converts field values between the format used by the Odoo server and Java
+ * types. Instances are immutable and can be shared between threads.
+ *
+ * The server stores datetimes in UTC. Absolute values (Date, Instant) are
+ * always converted as UTC, the time zone of the codec is used for values
+ * without a zone (LocalDateTime), for example the 'tz' of the session
+ * context.
+ *
+ * @author Pieter van der Merwe
+ *
+ */
+public final class ValueCodec {
+
+    public static final ValueCodec UTC = new ValueCodec(ZoneOffset.UTC);
+
+    private static final DateTimeFormatter DATE_TIME_PATTERN = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final Map<String, ValueCodec> CODECS_BY_TIME_ZONE = new ConcurrentHashMap<>();
+
+    private final ZoneId zone;
+
+    public ValueCodec(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Returns a codec for the time zone of a session context
+     *
+     * @param context Session context
+     * @return A codec for the 'tz' context value, or the UTC codec if the
+     * context doesn't have a (valid) time zone
+     */
+    public static ValueCodec forContext(Context context) {
+        return context == null ? UTC : forTimeZone(context.getTimeZone());
+    }
+
+    /**
+     * Returns a codec for a time zone name. Codecs are cached per name.
+     *
+     * @param timeZone Time zone name, for example "Europe/Brussels"
+     * @return The codec, or the UTC codec if the name is null or not valid
+     */
+    public static ValueCodec forTimeZone(String timeZone) {
+        if (timeZone == null || timeZone.isEmpty()) return UTC;
+        return CODECS_BY_TIME_ZONE.computeIfAbsent(timeZone, tz -> {
+            try {
+                return new ValueCodec(ZoneId.of(tz));
+            } catch (DateTimeException e) {
+                return UTC;
+            }
+        });
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Parses a date value ("yyyy-MM-dd") returned by the server
+     *
+     * @param value Server value
+     * @return The date or null if the value is empty or can't be parsed
+     */
+    public LocalDate decodeDate(Object value) {
+        if (!(value instanceof String)) return null;
+        final String text = (String) value;
+        // Fast path for the fixed layout, anything after the date is ignored
+        if (text.length() >= 10 && text.charAt(4) == '-' && text.charAt(7) == '-') {
+            final int year = digits(text, 0, 4);
+            final int month = digits(text, 5, 2);
+            final int day = digits(text, 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                try {
+                    return LocalDate.of(year, month, day);
+                } catch (DateTimeException e) {
+                    return null;
+                }
+            }
+        }
+        try {
+            return LocalDate.parse(text);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a datetime value ("yyyy-MM-dd HH:mm:ss", UTC) returned by the
+     * server
+     *
+     * @param value Server value
+     * @return The instant or null if the value is empty or can't be parsed
+     */
+    public Instant decodeDateTime(Object value) {
+        if (!(value instanceof String)) return null;
+        final String text = (String) value;
+        // Fast path for the fixed layout, fractions of a second are ignored
+        if (text.length() >= 19 && text.charAt(4) == '-' && text.charAt(7) == '-' && text.charAt(10) == ' '
+                && text.charAt(13) == ':' && text.charAt(16) == ':') {
+            final int year = digits(text, 0, 4);
+            final int month = digits(text, 5, 2);
+            final int day = digits(text, 8, 2);
+            final int hour = digits(text, 11, 2);
+            final int minute = digits(text, 14, 2);
+            final int second = digits(text, 17, 2);
+            if (year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0 && second >= 0) {
+                try {
+                    final long epochDay = LocalDate.of(year, month, day).toEpochDay();
+                    if (hour > 23 || minute > 59 || second > 59) return null;
+                    return Instant.ofEpochSecond(epochDay * 86400L + hour * 3600L + minute * 60L + second);
+                } catch (DateTimeException e) {
+                    return null;
+                }
+            }
+        }
+        try {
+            return LocalDateTime.parse(text, DATE_TIME_PATTERN).toInstant(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a datetime value returned by the server and converts it to the
+     * time zone of this codec
+     *
+     * @param value Server value
+     * @return The local datetime or null if the value is empty or can't be
+     * parsed
+     */
+    public LocalDateTime decodeLocalDateTime(Object value) {
+        final Instant instant = decodeDateTime(value);
+        return instant == null ? null : LocalDateTime.ofInstant(instant, zone);
+    }
+
+    /**
+     * Converts an integer value returned by the server. Many2one values
+     * return the related ID.
+     *
+     * @param value Server value
+     * @param defaultValue Value to return if the value is empty
+     * @return
+     */
+    public int decodeInt(Object value, int defaultValue) {
+        if (value instanceof Number) return ((Number) value).intValue();
+        if (value instanceof Object[]) return decodeMany2oneId(value);
+        if (value instanceof String) return Integer.parseInt(((String) value).trim());
+        return defaultValue;
+    }
+
+    /**
+     * Converts a float value returned by the server
+     *
+     * @param value Server value
+     * @param defaultValue Value to return if the value is empty
+     * @return
+     */
+    public double decodeDouble(Object value, double defaultValue) {
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        if (value instanceof String) return Double.parseDouble(((String) value).trim());
+        return defaultValue;
+    }
+
+    /**
+     * Converts a boolean value returned by the server
+     *
+     * @param value Server value
+     * @return
+     */
+    public boolean decodeBoolean(Object value) {
+        if (value instanceof Boolean) return (Boolean) value;
+        return value != null && Boolean.parseBoolean(value.toString());
+    }
+
+    /**
+     * Returns the related ID of a many2one value ([id, name] or id)
+     *
+     * @param value Server value
+     * @return The ID or 0 if the value is empty
+     */
+    public int decodeMany2oneId(Object value) {
+        if (value instanceof Number) return ((Number) value).intValue();
+        if (value instanceof Object[] && ((Object[]) value).length > 0) {
+            return IdSet.toInt(((Object[]) value)[0]);
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the display name of a many2one value ([id, name])
+     *
+     * @param value Server value
+     * @return The name or null if the value is empty or doesn't have a name
+     */
+    public String decodeMany2oneName(Object value) {
+        if (value instanceof Object[] && ((Object[]) value).length > 1) {
+            final Object name = ((Object[]) value)[1];
+            return name == null ? null : name.toString();
+        }
+        return null;
+    }
+
+    /**
+     * Formats a date for the server. Accepts Date, LocalDate, LocalDateTime,
+     * ZonedDateTime, OffsetDateTime, Instant, epoch milliseconds or an already
+     * formatted String.
+     *
+     * @param value Date value
+     * @return The date as "yyyy-MM-dd"
+     */
+    public String encodeDate(Object value) {
+        if (value instanceof LocalDate) return formatDate((LocalDate) value);
+        if (value instanceof LocalDateTime) return formatDate(((LocalDateTime) value).toLocalDate());
+        if (value instanceof ZonedDateTime) return formatDate(((ZonedDateTime) value).toLocalDate());
+        if (value instanceof OffsetDateTime) return formatDate(((OffsetDateTime) value).toLocalDate());
+        if (value instanceof String) return (String) value;
+        return formatDate(toInstant(value).atOffset(ZoneOffset.UTC).toLocalDate());
+    }
+
+    /**
+     * Formats a datetime for the server in UTC. Accepts Date, Instant,
+     * ZonedDateTime, OffsetDateTime, LocalDateTime (in the time zone of this
+     * codec), LocalDate, epoch milliseconds or an already formatted String.
+     *
+     * @param value Datetime value
+     * @return The datetime as "yyyy-MM-dd HH:mm:ss"
+     */
+    public String encodeDateTime(Object value) {
+        if (value instanceof LocalDateTime) return formatDateTime(((LocalDateTime) value).atZone(zone).toInstant());
+        if (value instanceof LocalDate) return formatDateTime(((LocalDate) value).atStartOfDay(zone).toInstant());
+        if (value instanceof ZonedDateTime) return formatDateTime(((ZonedDateTime) value).toInstant());
+        if (value instanceof OffsetDateTime) return formatDateTime(((OffsetDateTime) value).toInstant());
+        if (value instanceof String) return (String) value;
+        return formatDateTime(toInstant(value));
+    }
+
+    private static Instant toInstant(Object value) {
+        if (value instanceof Instant) return (Instant) value;
+        if (value instanceof Date) return Instant.ofEpochMilli(((Date) value).getTime());
+        if (value instanceof Number) return Instant.ofEpochMilli(((Number) value).longValue());
+        throw new IllegalArgumentException("Cannot format given Object as a Date");
+    }
+
+    public String formatDate(LocalDate date) {
+        final char[] chars = new char[10];
+        writeDate(chars, date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+        return new String(chars);
+    }
+
+    public String formatDateTime(Instant instant) {
+        final long epochSecond = instant.getEpochSecond();
+        final long epochDay = Math.floorDiv(epochSecond, 86400L);
+        final int secondOfDay = (int) Math.floorMod(epochSecond, 86400L);
+        final LocalDate date = LocalDate.ofEpochDay(epochDay);
+        final char[] chars = new char[19];
+        writeDate(chars, date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+        chars[10] = ' ';
+        writeTwoDigits(chars, 11, secondOfDay / 3600);
+        chars[13] = ':';
+        writeTwoDigits(chars, 14, (secondOfDay / 60) % 60);
+        chars[16] = ':';
+        writeTwoDigits(chars, 17, secondOfDay % 60);
+        return new String(chars);
+    }
+
+    /**
+     * Converts a value to the format expected by the write and create calls of
+     * the server
+     *
+     * @param field Field the value is for
+     * @param value Value to convert
+     * @return The converted value, false for null values
+     */
+    public Object encode(Field field, Object value) {
+        if (value == null) return false;
+        switch (field.getType()) {
+            case BOOLEAN:
+                return value;
+            case FLOAT:
+                return value instanceof Double ? value : Double.valueOf(value.toString());
+            case MANY2MANY:
+            case MANY2ONE:
+            case ONE2MANY:
+                return encodeX2Many(value);
+            case INTEGER:
+                return encodeInteger(value);
+            case DATE:
+                return encodeDate(value);
+            case DATETIME:
+                return encodeDateTime(value);
+            case BINARY:
+                return encodeBinary(value);
+            default:
+                return value.toString();
+        }
+    }
+
+    private Object encodeBinary(Object value) {
+        // Streams and files are base64 encoded while the request is written.
+        // A stream can only be sent once, OdooTypeFactory rejects it after that.
+        if (value instanceof InputStream || value instanceof Path) {
+            return value;
+        }
+        if (value instanceof byte[]) {
+            return Base64.getEncoder().encodeToString((byte[]) value);
+        }
+        return value.toString();
+    }
+
+    private Object encodeX2Many(Object value) {
+        if (value instanceof X2ManyCommands) {
+            return ((X2ManyCommands) value).encode(this);
+        }
+        // For write, otherwise it is a comma separated list of strings used
+        // by import
+        if (value instanceof Object[]) {
+            final Object[] tmp = {6, 0, (Object[]) value};
+            return new Object[][]{tmp};
+        }
+        return value;
+    }
+
+    private Object encodeInteger(Object value) {
+        if (value instanceof Integer) return value;
+        try {
+            // To make sure 1.0 is converted to 1
+            return Double.valueOf(value.toString()).intValue();
+        } catch (NumberFormatException e) {
+            //for versions 8 and 9 id can be array with legth 2 (id and name). for example [5, Administrator]
+            final Object[] arr = (Object[]) value;
+            return Double.valueOf(arr[0].toString()).intValue();
+        }
+    }
+
+    private static void writeDate(char[] chars, int year, int month, int day) {
+        chars[0] = (char) ('0' + year / 1000 % 10);
+        chars[1] = (char) ('0' + year / 100 % 10);
+        chars[2] = (char) ('0' + year / 10 % 10);
+        chars[3] = (char) ('0' + year % 10);
+        chars[4] = '-';
+        writeTwoDigits(chars, 5, month);
+        chars[7] = '-';
+        writeTwoDigits(chars, 8, day);
+    }
+
+    private static void writeTwoDigits(char[] chars, int offset, int value) {
+        chars[offset] = (char) ('0' + value / 10);
+        chars[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    // Returns the value of a run of digits, or -1 if a character isn't a digit
+    private static int digits(String text, int offset, int length) {
+        int result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            final char c = text.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ValueCodec(zone=" + zone + ")";
+    }
+}
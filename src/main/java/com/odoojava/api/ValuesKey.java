@@ -0,0 +1,67 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Hash key for a map of values to write. Array values, like many2many
+ * commands, are compared by content so that rows with the same changes end up
+ * in the same group.
+ */
+final class ValuesKey {
+
+    private final Map<String, Object> values;
+    private final int hash;
+
+    ValuesKey(final Map<String, Object> values) {
+        this.values = values;
+        int h = 0;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            h += entry.getKey().hashCode() ^ Arrays.deepHashCode(new Object[]{entry.getValue()});
+        }
+        this.hash = h;
+    }
+
+    Map<String, Object> getValues() {
+        return values;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof ValuesKey)) return false;
+        final ValuesKey other = (ValuesKey) obj;
+        if (hash != other.hash || values.size() != other.values.size()) return false;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (!other.values.containsKey(entry.getKey())
+                    || !Objects.deepEquals(entry.getValue(), other.values.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
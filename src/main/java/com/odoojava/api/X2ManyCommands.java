@@ -0,0 +1,239 @@
+/*
+ *   Copyright 2011, 2014 De Bortoli Wines Pty Limited (Australia)
+ *
+ *   This file is part of OdooJavaAPI.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.odoojava.api;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command list for a one2many or many2many field. Odoo applies the commands in
+ * order when the parent record is created or written, so a header and all of
+ * its lines are persisted in a single call.
+ *
+ * Put an instance in a MapRow for the relational field. Child rows are encoded
+ * when the parent is sent: rows without an ID become a create command and rows
+ * with an ID become an update command with their changed fields.
+ *
+ * IDs of records created through (0, 0, values) are not returned by the
+ * server. Read the relational field of the parent again if they are needed.
+ *
+ * @author Pieter van der Merwe
+ *
+ */
+public final class X2ManyCommands implements Serializable {
+
+    private static final long serialVersionUID = 3856011476298412370L;
+
+    private static final int CREATE = 0;
+    private static final int UPDATE = 1;
+    private static final int DELETE = 2;
+    private static final int UNLINK = 3;
+    private static final int LINK = 4;
+    private static final int CLEAR = 5;
+    private static final int REPLACE = 6;
+
+    private final List<Command> commands = new ArrayList<>();
+
+    /**
+     * Builds the commands for a collection of child rows. Rows without an ID
+     * are created, rows with changed fields are updated and the remaining rows
+     * are linked.
+     *
+     * @param children Child rows of the parent record
+     * @return
+     */
+    public static X2ManyCommands fromRows(final Collection<MapRow> children) {
+        final X2ManyCommands result = new X2ManyCommands();
+        for (final MapRow child : children) {
+            if (child.getID() == 0) {
+                result.create(child);
+            } else if (!child.getChangedFields().isEmpty()) {
+                result.update(child);
+            } else {
+                result.link(child.getID());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds the commands for a collection of child rows and deletes the
+     * existing children that are no longer in the collection
+     *
+     * @param children Child rows of the parent record
+     * @param existingIds IDs of the children the parent has on the server
+     * @return
+     */
+    public static X2ManyCommands fromRows(final Collection<MapRow> children, final IdSet existingIds) {
+        final X2ManyCommands result = fromRows(children);
+        existingIds.difference(IdSet.fromRows(children)).forEach(result::delete);
+        return result;
+    }
+
+    /**
+     * Creates a related record from the changed fields of a new row
+     */
+    public X2ManyCommands create(final MapRow child) {
+        commands.add(new Command(CREATE, 0, child));
+        return this;
+    }
+
+    /**
+     * Creates a related record from values that are already in the format
+     * expected by the server
+     */
+    public X2ManyCommands create(final Map<String, Object> values) {
+        commands.add(new Command(CREATE, 0, new HashMap<>(values)));
+        return this;
+    }
+
+    /**
+     * Writes the changed fields of an existing row to the related record
+     */
+    public X2ManyCommands update(final MapRow child) {
+        commands.add(new Command(UPDATE, child.getID(), child));
+        return this;
+    }
+
+    /**
+     * Writes values that are already in the format expected by the server to
+     * a related record
+     */
+    public X2ManyCommands update(final int id, final Map<String, Object> values) {
+        commands.add(new Command(UPDATE, id, new HashMap<>(values)));
+        return this;
+    }
+
+    /**
+     * Removes the relation and deletes the related record
+     */
+    public X2ManyCommands delete(final int id) {
+        commands.add(new Command(DELETE, id, null));
+        return this;
+    }
+
+    /**
+     * Removes the relation without deleting the related record
+     */
+    public X2ManyCommands unlink(final int id) {
+        commands.add(new Command(UNLINK, id, null));
+        return this;
+    }
+
+    /**
+     * Adds a relation to an existing record
+     */
+    public X2ManyCommands link(final int id) {
+        commands.add(new Command(LINK, id, null));
+        return this;
+    }
+
+    /**
+     * Removes all relations without deleting the related records
+     */
+    public X2ManyCommands clear() {
+        commands.add(new Command(CLEAR, 0, null));
+        return this;
+    }
+
+    /**
+     * Replaces all relations with the given records
+     */
+    public X2ManyCommands replace(final IdSet ids) {
+        commands.add(new Command(REPLACE, 0, ids));
+        return this;
+    }
+
+    public int size() {
+        return commands.size();
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Marks the changes of all child rows as applied, after the parent was
+     * written successfully
+     */
+    public void changesApplied() {
+        for (final Command command : commands) {
+            if (command.payload instanceof MapRow) {
+                ((MapRow) command.payload).changesApplied();
+            }
+        }
+    }
+
+    /**
+     * Converts the commands to the tuples expected by the server. Values of
+     * child rows are encoded with the codec, so nested command lists are
+     * encoded as well.
+     */
+    Object[] encode(final ValueCodec codec) {
+        final Object[] result = new Object[commands.size()];
+        for (int i = 0; i < result.length; i++) {
+            final Command command = commands.get(i);
+            final Object payload = command.payload instanceof MapRow
+                    ? encodeRow((MapRow) command.payload, codec)
+                    : command.payload;
+            result[i] = new Object[]{command.type, command.id, payload == null ? false : payload};
+        }
+        return result;
+    }
+
+    private static Map<String, Object> encodeRow(final MapRow row, final ValueCodec codec) {
+        final FieldCollection fields = row.getChangedFields();
+        final Map<String, Object> values = new HashMap<>(fields.size() * 2);
+        for (final Field field : fields) {
+            values.put(field.getName(), codec.encode(field, row.get(field)));
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("X2ManyCommands[");
+        for (int i = 0; i < commands.size(); i++) {
+            if (i > 0) sb.append(", ");
+            final Command command = commands.get(i);
+            sb.append('(').append(command.type).append(", ").append(command.id).append(')');
+        }
+        return sb.append(']').toString();
+    }
+
+    private static final class Command implements Serializable {
+
+        private static final long serialVersionUID = -2918644379041176830L;
+
+        private final int type;
+        private final int id;
+        // MapRow, value map, IdSet or null
+        private final Object payload;
+
+        private Command(final int type, final int id, final Object payload) {
+            this.type = type;
+            this.id = id;
+            this.payload = payload;
+        }
+    }
+}